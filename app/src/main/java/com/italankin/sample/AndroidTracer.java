@@ -0,0 +1,21 @@
+package com.italankin.sample;
+
+import android.os.Trace;
+
+import com.italankin.sample.expandablelist.Tracer;
+
+/**
+ * Writes sections to systrace.
+ */
+public class AndroidTracer implements Tracer {
+
+    @Override
+    public void beginSection(String name) {
+        Trace.beginSection(name);
+    }
+
+    @Override
+    public void endSection() {
+        Trace.endSection();
+    }
+}
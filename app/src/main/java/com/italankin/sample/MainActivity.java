@@ -3,11 +3,15 @@ package com.italankin.sample;
 import android.os.Bundle;
 import android.widget.Toast;
 
+import com.italankin.sample.adapter.AdapterUpdateCallback;
+import com.italankin.sample.adapter.ChoreographerFrameScheduler;
 import com.italankin.sample.adapter.ExpandableListAdapter;
 import com.italankin.sample.adapter.OnHeaderClickListener;
 import com.italankin.sample.adapter.OnItemClickListener;
 import com.italankin.sample.expandablelist.ExpandableList;
 import com.italankin.sample.expandablelist.INode;
+import com.italankin.sample.expandablelist.Tracing;
+import com.italankin.sample.expandablelist.UpdateDispatcher;
 import com.italankin.sample.items.BaseItem;
 import com.italankin.sample.items.Header1;
 import com.italankin.sample.items.Header2;
@@ -26,15 +30,23 @@ public class MainActivity extends AppCompatActivity implements OnItemClickListen
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        if (BuildConfig.DEBUG) {
+            Tracing.setTracer(new AndroidTracer());
+        }
         setContentView(R.layout.acitivty_main);
         RecyclerView recyclerView = findViewById(R.id.list);
         expandableListAdapter = new ExpandableListAdapter(expandableList, this, this);
+        // changes are dispatched to the adapter once per frame, adapter displays the list as of the last flush
+        UpdateDispatcher dispatcher = new UpdateDispatcher(expandableList,
+                new AdapterUpdateCallback(expandableListAdapter), new ChoreographerFrameScheduler());
+        dispatcher.setSnapshot(expandableListAdapter.getSnapshot());
+        expandableList.setUpdateCallback(dispatcher);
         recyclerView.setAdapter(expandableListAdapter);
     }
 
     @Override
     public void onItemClick(int position) {
-        BaseItem item = (BaseItem) expandableList.get(position);
+        BaseItem item = (BaseItem) expandableListAdapter.getItem(position);
         StringBuilder desc = new StringBuilder(item.text);
         INode node = item;
         while ((node = node.getParent()) != null) {
@@ -46,19 +58,18 @@ public class MainActivity extends AppCompatActivity implements OnItemClickListen
 
     @Override
     public void onHeaderClick(int position) {
-        INode node = expandableList.get(position);
+        // position is given in the numbering of the adapter, which can be behind the list
+        INode node = expandableListAdapter.getItem(position);
+        if (expandableList.findById(node.getId()) != node) {
+            // deleted after the last flush
+            return;
+        }
+        // adapter is notified by the list
         if (node.isExpanded()) {
-            int collapsed = expandableList.collapse(node);
-            if (collapsed > 0) {
-                expandableListAdapter.notifyItemRangeRemoved(position + 1, collapsed);
-            }
+            expandableList.collapse(node);
         } else {
-            int expanded = expandableList.expand(node);
-            if (expanded > 0) {
-                expandableListAdapter.notifyItemRangeInserted(position + 1, expanded);
-            }
+            expandableList.expand(node);
         }
-        expandableListAdapter.notifyItemChanged(position);
     }
 
     private static ExpandableList createList() {
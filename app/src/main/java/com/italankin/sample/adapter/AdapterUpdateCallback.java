@@ -0,0 +1,59 @@
+package com.italankin.sample.adapter;
+
+import com.italankin.sample.expandablelist.ListUpdateCallback;
+import com.italankin.sample.expandablelist.Tracing;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Forwards changes of the list to the {@link RecyclerView.Adapter}.
+ */
+public class AdapterUpdateCallback implements ListUpdateCallback {
+    private static final String TRACE_NOTIFY = "Adapter.notify";
+
+    private final RecyclerView.Adapter<?> adapter;
+
+    public AdapterUpdateCallback(RecyclerView.Adapter<?> adapter) {
+        this.adapter = adapter;
+    }
+
+    @Override
+    public void onInserted(int position, int count) {
+        Tracing.begin(TRACE_NOTIFY);
+        try {
+            adapter.notifyItemRangeInserted(position, count);
+        } finally {
+            Tracing.end();
+        }
+    }
+
+    @Override
+    public void onRemoved(int position, int count) {
+        Tracing.begin(TRACE_NOTIFY);
+        try {
+            adapter.notifyItemRangeRemoved(position, count);
+        } finally {
+            Tracing.end();
+        }
+    }
+
+    @Override
+    public void onMoved(int fromPosition, int toPosition) {
+        Tracing.begin(TRACE_NOTIFY);
+        try {
+            adapter.notifyItemMoved(fromPosition, toPosition);
+        } finally {
+            Tracing.end();
+        }
+    }
+
+    @Override
+    public void onChanged(int position, int count, Object payload) {
+        Tracing.begin(TRACE_NOTIFY);
+        try {
+            adapter.notifyItemRangeChanged(position, count, payload);
+        } finally {
+            Tracing.end();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.italankin.sample.adapter;
+
+import android.view.Choreographer;
+
+import com.italankin.sample.expandablelist.UpdateDispatcher;
+
+/**
+ * Runs actions on the next frame of the main thread, before the layout pass.
+ */
+public class ChoreographerFrameScheduler implements UpdateDispatcher.FrameScheduler {
+    private final Choreographer choreographer = Choreographer.getInstance();
+
+    @Override
+    public void postFrame(Runnable action) {
+        choreographer.postFrameCallback(frameTimeNanos -> action.run());
+    }
+}
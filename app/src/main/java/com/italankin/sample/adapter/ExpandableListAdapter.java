@@ -1,18 +1,69 @@
 package com.italankin.sample.adapter;
 
+import android.view.ViewGroup;
+
 import com.hannesdorfmann.adapterdelegates4.AbsDelegationAdapter;
 import com.italankin.sample.expandablelist.ExpandableList;
+import com.italankin.sample.expandablelist.INode;
+import com.italankin.sample.expandablelist.ListSnapshot;
+import com.italankin.sample.expandablelist.Tracing;
+import com.italankin.sample.expandablelist.UpdateDispatcher;
+import com.italankin.sample.expandablelist.ViewTypes;
+import com.italankin.sample.items.Header1;
+import com.italankin.sample.items.Header2;
+import com.italankin.sample.items.Header3;
+import com.italankin.sample.items.Item;
+
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
 
-public class ExpandableListAdapter extends AbsDelegationAdapter<ExpandableList> {
+/**
+ * Displays the {@link ExpandableList}. By default the adapter reads the list directly, which is correct as long
+ * as changes are dispatched to the {@link RecyclerView} as they happen. When changes are deferred (e.g. by
+ * {@link UpdateDispatcher}), the adapter must display a {@link #getSnapshot() snapshot}, which is advanced
+ * by the same changes right before they are dispatched (see {@link UpdateDispatcher#setSnapshot(ListSnapshot)}),
+ * so the adapter never reads rows the {@link RecyclerView} does not know about yet.
+ */
+public class ExpandableListAdapter extends AbsDelegationAdapter<List<INode>> {
+    private static final String TRACE_CREATE = "Adapter.create";
+    private static final String TRACE_BIND = "Adapter.bind";
+
+    private final ExpandableList expandableList;
+    private ListSnapshot<INode> snapshot;
 
     public ExpandableListAdapter(ExpandableList expandableList, OnItemClickListener onItemClickListener,
             OnHeaderClickListener onHeaderClickListener) {
+        this.expandableList = expandableList;
         setItems(expandableList);
         setHasStableIds(true);
-        delegatesManager.addDelegate(new ItemAdapterDelegate(onItemClickListener));
-        delegatesManager.addDelegate(new Header1AdapterDelegate(onHeaderClickListener));
-        delegatesManager.addDelegate(new Header2AdapterDelegate(onHeaderClickListener));
-        delegatesManager.addDelegate(new Header3AdapterDelegate(onHeaderClickListener));
+        // delegates are registered with view types of nodes, so they are not asked in turn for every position
+        delegatesManager.addDelegate(ViewTypes.of(Item.class), new ItemAdapterDelegate(onItemClickListener));
+        delegatesManager.addDelegate(ViewTypes.of(Header1.class), new Header1AdapterDelegate(onHeaderClickListener));
+        delegatesManager.addDelegate(ViewTypes.of(Header2.class), new Header2AdapterDelegate(onHeaderClickListener));
+        delegatesManager.addDelegate(ViewTypes.of(Header3.class), new Header3AdapterDelegate(onHeaderClickListener));
+    }
+
+    /**
+     * Switch the adapter to a snapshot of the list, created on the first call.
+     *
+     * @return snapshot of the list, which the adapter displays from now on
+     */
+    public ListSnapshot<INode> getSnapshot() {
+        if (snapshot == null) {
+            snapshot = new ListSnapshot<>(expandableList);
+            setItems(snapshot);
+        }
+        return snapshot;
+    }
+
+    /**
+     * @param position adapter position, e.g. {@link RecyclerView.ViewHolder#getAdapterPosition()}
+     * @return node, displayed at {@code position}
+     */
+    public INode getItem(int position) {
+        return items.get(position);
     }
 
     @Override
@@ -20,8 +71,35 @@ public class ExpandableListAdapter extends AbsDelegationAdapter<ExpandableList>
         return items.size();
     }
 
+    @Override
+    public int getItemViewType(int position) {
+        return items.get(position).getViewType();
+    }
+
     @Override
     public long getItemId(int position) {
-        return items.get(position).hashCode();
+        return items.get(position).getId();
+    }
+
+    @NonNull
+    @Override
+    public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        Tracing.begin(TRACE_CREATE);
+        try {
+            return super.onCreateViewHolder(parent, viewType);
+        } finally {
+            Tracing.end();
+        }
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    @Override
+    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position, @NonNull List payloads) {
+        Tracing.begin(TRACE_BIND);
+        try {
+            super.onBindViewHolder(holder, position, payloads);
+        } finally {
+            Tracing.end();
+        }
     }
 }
@@ -7,7 +7,8 @@ import android.widget.TextView;
 
 import com.hannesdorfmann.adapterdelegates4.AdapterDelegate;
 import com.italankin.sample.R;
-import com.italankin.sample.expandablelist.ExpandableList;
+import com.italankin.sample.expandablelist.ChangePayload;
+import com.italankin.sample.expandablelist.INode;
 import com.italankin.sample.items.BaseItem;
 import com.italankin.sample.items.Header3;
 
@@ -16,7 +17,7 @@ import java.util.List;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
-public class Header3AdapterDelegate extends AdapterDelegate<ExpandableList> {
+public class Header3AdapterDelegate extends AdapterDelegate<List<INode>> {
     private final OnHeaderClickListener listener;
 
     public Header3AdapterDelegate(OnHeaderClickListener listener) {
@@ -24,7 +25,7 @@ public class Header3AdapterDelegate extends AdapterDelegate<ExpandableList> {
     }
 
     @Override
-    protected boolean isForViewType(@NonNull ExpandableList items, int position) {
+    protected boolean isForViewType(@NonNull List<INode> items, int position) {
         return items.get(position) instanceof Header3;
     }
 
@@ -43,20 +44,34 @@ public class Header3AdapterDelegate extends AdapterDelegate<ExpandableList> {
     }
 
     @Override
-    protected void onBindViewHolder(@NonNull ExpandableList items, int position, @NonNull RecyclerView.ViewHolder holder, @NonNull List<Object> payloads) {
+    protected void onBindViewHolder(@NonNull List<INode> items, int position, @NonNull RecyclerView.ViewHolder holder, @NonNull List<Object> payloads) {
         BaseItem item = (BaseItem) items.get(position);
         ViewHolder viewHolder = (ViewHolder) holder;
-        viewHolder.text.setText(item.text);
-        int end = item.isExpanded() ? R.drawable.ic_keyboard_arrow_up : R.drawable.ic_keyboard_arrow_down;
-        viewHolder.text.setCompoundDrawablesWithIntrinsicBounds(0, 0, end, 0);
+        if (!payloads.contains(ChangePayload.EXPANSION_CHANGED)) {
+            // full bind
+            viewHolder.text.setText(item.text);
+        }
+        viewHolder.bindExpanded(item.isExpanded());
     }
 
     static class ViewHolder extends RecyclerView.ViewHolder {
         final TextView text;
+        /**
+         * Currently displayed state, {@code null} if not bound yet
+         */
+        Boolean expanded;
 
         ViewHolder(View itemView) {
             super(itemView);
             text = (TextView) itemView;
         }
+
+        void bindExpanded(boolean expanded) {
+            if (this.expanded == null || this.expanded != expanded) {
+                this.expanded = expanded;
+                int end = expanded ? R.drawable.ic_keyboard_arrow_up : R.drawable.ic_keyboard_arrow_down;
+                text.setCompoundDrawablesWithIntrinsicBounds(0, 0, end, 0);
+            }
+        }
     }
 }
@@ -7,7 +7,7 @@ import android.widget.TextView;
 
 import com.hannesdorfmann.adapterdelegates4.AdapterDelegate;
 import com.italankin.sample.R;
-import com.italankin.sample.expandablelist.ExpandableList;
+import com.italankin.sample.expandablelist.INode;
 import com.italankin.sample.items.Item;
 
 import java.util.List;
@@ -15,7 +15,7 @@ import java.util.List;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
-public class ItemAdapterDelegate extends AdapterDelegate<ExpandableList> {
+public class ItemAdapterDelegate extends AdapterDelegate<List<INode>> {
     private final OnItemClickListener listener;
 
     public ItemAdapterDelegate(OnItemClickListener listener) {
@@ -23,7 +23,7 @@ public class ItemAdapterDelegate extends AdapterDelegate<ExpandableList> {
     }
 
     @Override
-    protected boolean isForViewType(@NonNull ExpandableList items, int position) {
+    protected boolean isForViewType(@NonNull List<INode> items, int position) {
         return items.get(position) instanceof Item;
     }
 
@@ -42,7 +42,7 @@ public class ItemAdapterDelegate extends AdapterDelegate<ExpandableList> {
     }
 
     @Override
-    protected void onBindViewHolder(@NonNull ExpandableList items, int position, @NonNull RecyclerView.ViewHolder holder, @NonNull List<Object> payloads) {
+    protected void onBindViewHolder(@NonNull List<INode> items, int position, @NonNull RecyclerView.ViewHolder holder, @NonNull List<Object> payloads) {
         Item item = (Item) items.get(position);
         ((ViewHolder) holder).text.setText(item.text);
     }
@@ -0,0 +1,14 @@
+package com.italankin.sample.expandablelist;
+
+/**
+ * Payloads of {@link ListUpdateCallback#onChanged(int, int, Object)} events, which describe partial changes
+ * of items, so views can be updated without a full rebind.
+ * <br>
+ * Changes of the item content are reported with {@code null} payload.
+ */
+public enum ChangePayload {
+    /**
+     * {@link INode#isExpanded() Expansion state} of the item is changed.
+     */
+    EXPANSION_CHANGED
+}
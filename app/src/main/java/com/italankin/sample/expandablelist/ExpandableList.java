@@ -3,26 +3,205 @@ package com.italankin.sample.expandablelist;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.Spliterator;
+
+import androidx.annotation.RequiresApi;
 
 /**
  * Utility structure to represent expandable list.
  */
-public class ExpandableList extends Node implements List<INode> {
+public class ExpandableList extends Node implements List<INode>, RandomAccess {
 
     /**
      * Actual list of nodes. It is a flatten representation of current expanded nodes.
      */
     private final List<INode> list = new ArrayList<>();
 
+    /**
+     * Reusable buffer for visible nodes of an inserted, expanded or moved subtree. It is always cleared
+     * before the callback is notified, so capacity is kept, but nodes are not.
+     */
+    private final List<INode> block = new ArrayList<>();
+
+    private final TreeWalker walker = new TreeWalker();
+
+    /**
+     * Adds visited nodes to the {@link #list}, skipping collapsed subtrees.
+     */
+    private final TreeWalker.Visitor flattener = (node, depth) -> {
+        list.add(node);
+        return node.isExpanded() ? TreeWalker.Action.CONTINUE : TreeWalker.Action.SKIP_CHILDREN;
+    };
+
+    /**
+     * Adds visited nodes to the {@link #block}, skipping collapsed subtrees.
+     */
+    private final TreeWalker.Visitor blockCollector = (node, depth) -> {
+        block.add(node);
+        return node.isExpanded() ? TreeWalker.Action.CONTINUE : TreeWalker.Action.SKIP_CHILDREN;
+    };
+
+    /**
+     * Fills cached row data, see {@link #indexRows()}.
+     */
+    private final TreeWalker.Visitor rowIndexer = new TreeWalker.Visitor() {
+        @Override
+        public TreeWalker.Action enter(INode node, int depth) {
+            int position = indexedRows++;
+            if (openRows.length == depth) {
+                int[] newOpenRows = new int[depth * 2];
+                System.arraycopy(openRows, 0, newOpenRows, 0, depth);
+                openRows = newOpenRows;
+            }
+            openRows[depth] = position;
+            parentPositions[position] = depth > 0 ? openRows[depth - 1] : -1;
+            depths[position] = depth;
+            List<? extends INode> siblings = node.getParent().getChildren();
+            lastChildren[position] = siblings.get(siblings.size() - 1) == node;
+            return node.isExpanded() ? TreeWalker.Action.CONTINUE : TreeWalker.Action.SKIP_CHILDREN;
+        }
+
+        @Override
+        public void leave(INode node, int depth) {
+            rowEnds[openRows[depth]] = indexedRows;
+        }
+    };
+
+    /**
+     * Count of rows indexed by {@link #rowIndexer} and positions of the nodes being indexed, by depth.
+     */
+    private int indexedRows;
+    private int[] openRows = new int[16];
+
+    /**
+     * Count and max depth of the nodes visited by {@link #measuringFlattener}, and depth of the collapsed node,
+     * descendants of which are being visited, or {@code -1}.
+     */
+    private int measuredNodes;
+    private int maxDepth;
+    private int hiddenDepth = -1;
+
+    /**
+     * Adds visible nodes to the {@link #list} like {@link #flattener}, but also visits collapsed subtrees,
+     * so {@link ListMetrics#onTreeStats(int, int) tree stats} are collected in the same walk.
+     */
+    private final TreeWalker.Visitor measuringFlattener = new TreeWalker.Visitor() {
+        @Override
+        public TreeWalker.Action enter(INode node, int depth) {
+            measuredNodes++;
+            maxDepth = Math.max(maxDepth, depth);
+            if (hiddenDepth < 0) {
+                list.add(node);
+                if (!node.isExpanded()) {
+                    hiddenDepth = depth;
+                }
+            }
+            return TreeWalker.Action.CONTINUE;
+        }
+
+        @Override
+        public void leave(INode node, int depth) {
+            if (depth == hiddenDepth) {
+                hiddenDepth = -1;
+            }
+        }
+    };
+
+    /**
+     * Count of nodes registered by the current {@link #registerMembers(INode)}.
+     */
+    private int registered;
+
+    private final TreeWalker.Visitor registrar = (node, depth) -> {
+        registerMember(node);
+        registered++;
+        return TreeWalker.Action.CONTINUE;
+    };
+
+    /**
+     * Unregisters the first {@link #registered} visited nodes, after registration of a subtree has failed.
+     */
+    private final TreeWalker.Visitor rollback = (node, depth) -> {
+        if (registered == 0) {
+            return TreeWalker.Action.STOP;
+        }
+        registered--;
+        unregisterMember(node);
+        return TreeWalker.Action.CONTINUE;
+    };
+
+    /**
+     * Ids of the nodes being inserted, used by {@link #checkIds(INode)} for subtrees.
+     */
+    private final Set<Long> incomingIds = new HashSet<>();
+
+    private final TreeWalker.Visitor idChecker = (node, depth) -> {
+        checkId(node);
+        return TreeWalker.Action.CONTINUE;
+    };
+
+    private final TreeWalker.Visitor unregistrar = (node, depth) -> {
+        unregisterMember(node);
+        return TreeWalker.Action.CONTINUE;
+    };
+
+    /**
+     * All members of this list by their {@link INode#getId() ids}, including invisible ones.
+     */
+    private final Map<Long, INode> ids = new HashMap<>();
+
+    /**
+     * Count of members, which have observers. While there are none, members notify this list directly.
+     */
+    private int observedMembers = 0;
+
+    /**
+     * Node being moved by {@link #move(INode, INode, int)} and the lowest common {@link Node} ancestor of its
+     * old and new parents: events about the node are not propagated above it.
+     */
+    private INode movingChild;
+    private Node moveBoundary;
+
     /**
      * To avoid calling invalidate() multiple times
      */
     private boolean ignoreInvalidate = false;
 
+    private ListUpdateCallback callback;
+
+    private ListMetrics metrics;
+
+    /**
+     * Positions of parents of the rows in the {@link #list}, {@code -1} for children of this list.
+     */
+    private int[] parentPositions = new int[0];
+    /**
+     * Positions right after the last visible descendants of the rows in the {@link #list}.
+     */
+    private int[] rowEnds = new int[0];
+    /**
+     * Depths of the rows in the {@link #list}, {@code 0} for children of this list.
+     */
+    private int[] depths = new int[0];
+    /**
+     * Rows in the {@link #list}, which are the last children of their parents.
+     */
+    private boolean[] lastChildren = new boolean[0];
+    /**
+     * Cached row data ({@link #parentPositions}, {@link #rowEnds}, {@link #depths}, {@link #lastChildren})
+     * matches the current {@link #list}.
+     */
+    private boolean rowsValid = false;
+
     public ExpandableList() {
     }
 
@@ -30,24 +209,6 @@ public class ExpandableList extends Node implements List<INode> {
         insertAll(children);
     }
 
-    public void insertAll(Collection<? extends INode> children) {
-        insertAll(0, children);
-    }
-
-    public void insertAll(int index, Collection<? extends INode> children) {
-        if (index < 0 || index > size()) {
-            throw new IndexOutOfBoundsException("index=" + index + " is out of bounds: [0, " + size() + "]");
-        }
-        ignoreInvalidate = true;
-        int count = 0;
-        for (INode node : children) {
-            insert(index + count, node);
-            count++;
-        }
-        ignoreInvalidate = false;
-        invalidate();
-    }
-
     /**
      * Expand/collapse all child nodes of this list.
      *
@@ -56,11 +217,14 @@ public class ExpandableList extends Node implements List<INode> {
     @Override
     public void setExpanded(boolean expanded) {
         ignoreInvalidate = true;
-        for (INode node : children) {
-            node.setExpanded(expanded);
+        try {
+            for (INode node : children) {
+                node.setExpanded(expanded);
+            }
+        } finally {
+            ignoreInvalidate = false;
+            invalidate();
         }
-        ignoreInvalidate = false;
-        invalidate();
     }
 
     /**
@@ -68,8 +232,8 @@ public class ExpandableList extends Node implements List<INode> {
      */
     @Override
     public boolean isExpanded() {
-        for (INode node : children) {
-            if (!node.isExpanded()) {
+        for (int i = 0, size = children.size(); i < size; i++) {
+            if (!children.get(i).isExpanded()) {
                 return false;
             }
         }
@@ -112,6 +276,39 @@ public class ExpandableList extends Node implements List<INode> {
         return 0;
     }
 
+    /**
+     * Expand all collapsed ancestors of the {@code node}, so it becomes visible.
+     *
+     * @param node node
+     * @return position of the {@code node} in the current list
+     */
+    public int revealPath(INode node) {
+        if (!isChild(node)) {
+            throw new IllegalArgumentException(node + " is not a member of this list");
+        }
+        // the topmost collapsed ancestor, which is visible
+        INode top = null;
+        for (INode parent = node.getParent(); parent != this; parent = parent.getParent()) {
+            if (!parent.isExpanded()) {
+                top = parent;
+            }
+        }
+        if (top != null) {
+            // ancestors below the top are not visible yet
+            ignoreInvalidate = true;
+            try {
+                for (INode parent = node.getParent(); parent != top; parent = parent.getParent()) {
+                    parent.setExpanded(true);
+                }
+            } finally {
+                // nodes below the top are not visible, so the list is consistent even after a failure
+                ignoreInvalidate = false;
+            }
+            top.setExpanded(true);
+        }
+        return list.indexOf(node);
+    }
+
     /**
      * Collapse all parent nodes.
      */
@@ -155,14 +352,202 @@ public class ExpandableList extends Node implements List<INode> {
         return children.get(index);
     }
 
+    /**
+     * Get position of the parent of the node at {@code position}.
+     *
+     * @param position position of the node
+     * @return position of the parent, or {@code -1}, if the node is a child of this list
+     */
+    public int getParentPosition(int position) {
+        checkPosition(position);
+        return parentPositions[position];
+    }
+
+    /**
+     * Get depth of the node at {@code position}, e.g. to compute its indentation.
+     *
+     * @param position position of the node
+     * @return depth of the node, {@code 0} for children of this list
+     */
+    public int getDepth(int position) {
+        checkPosition(position);
+        return depths[position];
+    }
+
+    /**
+     * Check if the node at {@code position} is the last child of its parent, e.g. to draw tree lines.
+     *
+     * @param position position of the node
+     * @return {@code true}, if the node is the last child of its parent
+     */
+    public boolean isLastChild(int position) {
+        checkPosition(position);
+        return lastChildren[position];
+    }
+
+    /**
+     * Get positions of all ancestors of the node at {@code position}, e.g. to display sticky headers.
+     * <br>
+     * Positions are cached until the list is changed, so repeated queries do not walk the tree or allocate.
+     *
+     * @param position position of the node
+     * @param out      array for positions, starting from the topmost ancestor, must be large enough to hold
+     *                 all ancestors
+     * @return count of ancestors
+     */
+    public int ancestorPositions(int position, int[] out) {
+        checkPosition(position);
+        int count = 0;
+        for (int p = parentPositions[position]; p >= 0; p = parentPositions[p]) {
+            count++;
+        }
+        for (int p = parentPositions[position], i = count - 1; p >= 0; p = parentPositions[p], i--) {
+            out[i] = p;
+        }
+        return count;
+    }
+
+    /**
+     * Get positions of all ancestors of the node at {@code position}.
+     *
+     * @param position position of the node
+     * @return positions of ancestors, starting from the topmost one
+     * @see #ancestorPositions(int, int[])
+     */
+    public int[] ancestorPositions(int position) {
+        checkPosition(position);
+        int count = 0;
+        for (int p = parentPositions[position]; p >= 0; p = parentPositions[p]) {
+            count++;
+        }
+        int[] result = new int[count];
+        ancestorPositions(position, result);
+        return result;
+    }
+
+    /**
+     * Get position of the next sibling of the node at {@code position}, e.g. the header, which pushes out
+     * the sticky header of the node.
+     *
+     * @param position position of the node
+     * @return position of the next sibling, or {@code -1}, if the node is the last child of its parent
+     */
+    public int nextSiblingHeaderPosition(int position) {
+        checkPosition(position);
+        int next = rowEnds[position];
+        int parent = parentPositions[position];
+        int parentEnd = parent >= 0 ? rowEnds[parent] : list.size();
+        return next < parentEnd ? next : -1;
+    }
+
+    /**
+     * Find member of this list by its {@link INode#getId() id}.
+     *
+     * @param id id of the node
+     * @return node with the {@code id}, or {@code null}, if there is no such node in this list
+     */
+    public INode findById(long id) {
+        return ids.get(id);
+    }
+
+    /**
+     * Find position of the node with {@code id} in the current list, e.g. to scroll to it.
+     *
+     * @param id id of the node
+     * @return position of the node, or {@code -1}, if there is no such node or it is not visible
+     */
+    public int positionOfId(long id) {
+        INode node = ids.get(id);
+        return node != null ? list.indexOf(node) : -1;
+    }
+
+    /**
+     * Set callback for the positional changes of this list.
+     *
+     * @param callback callback, can be {@code null}
+     */
+    public void setUpdateCallback(ListUpdateCallback callback) {
+        this.callback = callback;
+    }
+
+    /**
+     * Set listener for metrics of operations of this list.
+     *
+     * @param metrics listener, can be {@code null}
+     */
+    public void setMetrics(ListMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     /**
      * Invalidate tree to recalculate list content and positions.
      */
     public void invalidate() {
-        list.clear();
-        for (INode parent : children) {
-            addInternal(parent);
+        Tracing.begin(Tracing.FLATTEN);
+        try {
+            long start = metrics != null ? System.nanoTime() : 0;
+            int old = list.size();
+            list.clear();
+            rowsValid = false;
+            if (metrics != null) {
+                measuredNodes = 0;
+                maxDepth = 0;
+                walker.walkChildren(this, measuringFlattener);
+            } else {
+                for (int i = 0, size = children.size(); i < size; i++) {
+                    addInternal(children.get(i));
+                }
+            }
+            if (callback != null) {
+                // old positions of nodes are unknown at this point
+                if (old > 0) {
+                    callback.onRemoved(0, old);
+                }
+                if (!list.isEmpty()) {
+                    callback.onInserted(0, list.size());
+                }
+            }
+            if (metrics != null) {
+                metrics.onOperation(ListMetrics.Operation.INVALIDATE, System.nanoTime() - start, list.size(), 0);
+                metrics.onTreeStats(measuredNodes, maxDepth);
+            }
+        } finally {
+            Tracing.end();
+        }
+    }
+
+    /**
+     * Move {@code node} with all its children to the {@code newParent}.
+     * <br>
+     * Visible nodes are moved within the list at once, without recalculating the whole list.
+     *
+     * @param node      node to move
+     * @param newParent new parent, this list or any of its members
+     * @param index     index in the {@code newParent}, after {@code node} is removed from its current parent;
+     *                  ignored, if {@code newParent} is a {@link SortedNode}
+     * @return new position of the {@code node}, or {@code -1} if it is not visible after the move
+     */
+    public int move(INode node, INode newParent, int index) {
+        checkMove(node, newParent);
+        int size = newParent.getChildren().size() - (node.getParent() == newParent ? 1 : 0);
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("index=" + index + " is out of bounds: [0, " + size + "]");
         }
+        return moveChecked(node, newParent, index);
+    }
+
+    /**
+     * Move {@code node} with all its children to the end of {@code newParent} (or to the position defined by
+     * the {@code newParent} itself, e.g. {@link SortedNode}).
+     *
+     * @param node      node to move
+     * @param newParent new parent, this list or any of its members
+     * @return new position of the {@code node}, or {@code -1} if it is not visible after the move
+     * @see #move(INode, INode, int)
+     */
+    public int move(INode node, INode newParent) {
+        checkMove(node, newParent);
+        return moveChecked(node, newParent, -1);
     }
 
     /**
@@ -172,16 +557,19 @@ public class ExpandableList extends Node implements List<INode> {
      */
     public void setExpandedDeep(boolean expanded) {
         ignoreInvalidate = true;
-        setExpandedDeep(expanded, this);
-        ignoreInvalidate = false;
-        invalidate();
+        try {
+            setExpandedDeep(expanded, this);
+        } finally {
+            ignoreInvalidate = false;
+            invalidate();
+        }
     }
 
     private void setExpandedDeep(boolean expanded, INode node) {
-        node.setExpanded(expanded);
-        for (INode child : node.getChildren()) {
-            setExpandedDeep(expanded, child);
-        }
+        walker.walk(node, (n, depth) -> {
+            n.setExpanded(expanded);
+            return TreeWalker.Action.CONTINUE;
+        });
     }
 
     /**
@@ -214,12 +602,12 @@ public class ExpandableList extends Node implements List<INode> {
      * @return absolute size of node, including collapsed nodes.
      */
     protected int getAbsoluteSize(INode node) {
-        // include node
-        int count = 1;
-        for (INode child : node.getChildren()) {
-            count += getAbsoluteSize(child);
-        }
-        return count;
+        return walker.count(node, false);
+    }
+
+    @Override
+    protected int countVisible(INode node) {
+        return walker.count(node, true);
     }
 
     /**
@@ -228,36 +616,637 @@ public class ExpandableList extends Node implements List<INode> {
      * @param node node
      */
     protected void addInternal(INode node) {
-        list.add(node);
-        if (node.isExpanded()) {
-            for (INode child : node.getChildren()) {
-                addInternal(child);
+        walker.walk(node, flattener);
+    }
+
+    /**
+     * Find position in the {@link #list} for the {@code child}, which is not in the list yet.
+     *
+     * @param child child
+     * @return position for the {@code child}, or {@code -1}, if it should not be visible
+     */
+    private int insertionPosition(INode child) {
+        INode parent = child.getParent();
+        int parentPosition = -1;
+        if (parent != this) {
+            if (!parent.isExpanded() || (parentPosition = list.indexOf(parent)) < 0) {
+                return -1;
+            }
+        }
+        List<? extends INode> siblings = parent.getChildren();
+        int index = siblings.indexOf(child);
+        if (index > 0) {
+            INode previous = siblings.get(index - 1);
+            return list.indexOf(previous) + countVisible(previous);
+        }
+        return parentPosition + 1;
+    }
+
+    /**
+     * Add visible nodes of inserted {@code child} to the {@link #list}.
+     *
+     * @param child inserted child
+     */
+    protected void insertInternal(INode child) {
+        Tracing.begin(Tracing.SPLICE);
+        try {
+            long start = metrics != null ? System.nanoTime() : 0;
+            int position = insertionPosition(child);
+            if (position < 0) {
+                return;
+            }
+            walker.walk(child, blockCollector);
+            insertBlock(position, start);
+        } finally {
+            Tracing.end();
+        }
+    }
+
+    /**
+     * Add visible nodes of adjacent inserted {@code children} to the {@link #list} at once.
+     *
+     * @param children inserted children, in order
+     */
+    protected void insertAllInternal(List<? extends INode> children) {
+        Tracing.begin(Tracing.SPLICE);
+        try {
+            long start = metrics != null ? System.nanoTime() : 0;
+            int position = insertionPosition(children.get(0));
+            if (position < 0) {
+                return;
+            }
+            for (int i = 0, size = children.size(); i < size; i++) {
+                walker.walk(children.get(i), blockCollector);
+            }
+            insertBlock(position, start);
+        } finally {
+            Tracing.end();
+        }
+    }
+
+    /**
+     * Insert collected {@link #block} to the {@link #list} at {@code position} and report it.
+     *
+     * @param position position of the block
+     * @param start    start time of the operation, if {@link #metrics} are set
+     */
+    private void insertBlock(int position, long start) {
+        int count = block.size();
+        list.addAll(position, block);
+        block.clear();
+        rowsValid = false;
+        if (callback != null) {
+            callback.onInserted(position, count);
+        }
+        if (metrics != null) {
+            metrics.onOperation(ListMetrics.Operation.INSERT, System.nanoTime() - start, count,
+                    blockBytes(count));
+        }
+    }
+
+    /**
+     * Remove visible nodes of deleted {@code child} from the {@link #list}.
+     *
+     * @param child deleted child
+     */
+    protected void deleteInternal(INode child) {
+        Tracing.begin(Tracing.SPLICE);
+        try {
+            long start = metrics != null ? System.nanoTime() : 0;
+            int position = list.indexOf(child);
+            if (position < 0) {
+                return;
+            }
+            removeRows(position, countVisible(child), start);
+        } finally {
+            Tracing.end();
+        }
+    }
+
+    /**
+     * Remove visible nodes of adjacent deleted {@code children} from the {@link #list} at once.
+     *
+     * @param children deleted children, in order
+     */
+    protected void deleteAllInternal(List<? extends INode> children) {
+        Tracing.begin(Tracing.SPLICE);
+        try {
+            long start = metrics != null ? System.nanoTime() : 0;
+            // rows of adjacent siblings are adjacent too
+            int position = list.indexOf(children.get(0));
+            if (position < 0) {
+                return;
+            }
+            int count = 0;
+            for (int i = 0, size = children.size(); i < size; i++) {
+                count += countVisible(children.get(i));
+            }
+            removeRows(position, count, start);
+        } finally {
+            Tracing.end();
+        }
+    }
+
+    /**
+     * Remove {@code count} rows from the {@link #list} at {@code position} and report it.
+     *
+     * @param position position of the first row
+     * @param count    count of rows
+     * @param start    start time of the operation, if {@link #metrics} are set
+     */
+    private void removeRows(int position, int count, long start) {
+        list.subList(position, position + count).clear();
+        rowsValid = false;
+        if (callback != null) {
+            callback.onRemoved(position, count);
+        }
+        if (metrics != null) {
+            metrics.onOperation(ListMetrics.Operation.DELETE, System.nanoTime() - start, count, 0);
+        }
+    }
+
+    /**
+     * Add or remove visible children of the {@code node}, which was expanded or collapsed.
+     *
+     * @param node changed node
+     */
+    protected void changeInternal(INode node) {
+        Tracing.begin(Tracing.SPLICE);
+        try {
+            long start = metrics != null ? System.nanoTime() : 0;
+            int position = list.indexOf(node);
+            if (position < 0) {
+                return;
+            }
+            rowsValid = false;
+            int count;
+            if (node.isExpanded()) {
+                walker.walkChildren(node, blockCollector);
+                list.addAll(position + 1, block);
+                count = block.size();
+                block.clear();
+                if (callback != null && count > 0) {
+                    callback.onInserted(position + 1, count);
+                }
+            } else {
+                count = 0;
+                List<? extends INode> children = node.getChildren();
+                for (int i = 0, size = children.size(); i < size; i++) {
+                    count += countVisible(children.get(i));
+                }
+                list.subList(position + 1, position + 1 + count).clear();
+                if (callback != null && count > 0) {
+                    callback.onRemoved(position + 1, count);
+                }
+            }
+            if (callback != null) {
+                callback.onChanged(position, 1, ChangePayload.EXPANSION_CHANGED);
+            }
+            if (metrics != null) {
+                boolean expanded = node.isExpanded();
+                metrics.onOperation(expanded ? ListMetrics.Operation.EXPAND : ListMetrics.Operation.COLLAPSE,
+                        System.nanoTime() - start, count, expanded ? blockBytes(count) : 0);
+            }
+        } finally {
+            Tracing.end();
+        }
+    }
+
+    /**
+     * Move visible nodes of the {@code child} in the {@link #list} to match its new place in the tree.
+     *
+     * @param child child, which was moved
+     * @param from  old position of the {@code child}, or {@code -1}, if it was not visible
+     * @return new position of the {@code child}, or {@code -1}, if it is not visible
+     */
+    protected int moveInternal(INode child, int from) {
+        Tracing.begin(Tracing.SPLICE);
+        try {
+            long start = metrics != null ? System.nanoTime() : 0;
+            rowsValid = false;
+            if (from >= 0) {
+                List<INode> rows = list.subList(from, from + countVisible(child));
+                block.addAll(rows);
+                rows.clear();
+            }
+            int to = insertionPosition(child);
+            if (to >= 0) {
+                if (from < 0) {
+                    walker.walk(child, blockCollector);
+                }
+                list.addAll(to, block);
+            }
+            int count = block.size();
+            block.clear();
+            if (callback != null) {
+                if (from >= 0 && to >= 0) {
+                    if (from != to) {
+                        callback.onRangeMoved(from, to, count);
+                    }
+                } else if (from >= 0) {
+                    callback.onRemoved(from, count);
+                } else if (to >= 0) {
+                    callback.onInserted(to, count);
+                }
+            }
+            if (metrics != null) {
+                metrics.onOperation(ListMetrics.Operation.MOVE, System.nanoTime() - start, count,
+                        blockBytes(count));
+            }
+            return to;
+        } finally {
+            Tracing.end();
+        }
+    }
+
+    /**
+     * Estimate memory of a temporary copy of the {@link #block}, made by {@link List#addAll(int, java.util.Collection)}:
+     * an array of compressed references.
+     *
+     * @param rows count of rows
+     * @return estimated size in bytes
+     */
+    private static long blockBytes(int rows) {
+        return 16 + 4L * rows;
+    }
+
+    /**
+     * Check {@code position} and rebuild cached row data, if necessary.
+     *
+     * @param position position in the {@link #list}
+     */
+    private void checkPosition(int position) {
+        if (position < 0 || position >= list.size()) {
+            throw new IndexOutOfBoundsException("position=" + position + " is out of bounds: [0, " + list.size() + ")");
+        }
+        if (!rowsValid) {
+            int size = list.size();
+            if (parentPositions.length < size) {
+                int capacity = Math.max(size, parentPositions.length * 3 / 2);
+                parentPositions = new int[capacity];
+                rowEnds = new int[capacity];
+                depths = new int[capacity];
+                lastChildren = new boolean[capacity];
+            }
+            indexRows();
+            rowsValid = true;
+        }
+    }
+
+    /**
+     * Fill cached row data for visible members.
+     */
+    private void indexRows() {
+        indexedRows = 0;
+        walker.walkChildren(this, rowIndexer);
+    }
+
+    /**
+     * @return walker of this list, which can be used by members on the main thread
+     */
+    TreeWalker walker() {
+        return walker;
+    }
+
+    /**
+     * @return {@code true}, if any member of this list has observers
+     */
+    boolean hasObservedMembers() {
+        return observedMembers > 0;
+    }
+
+    void onObservedMembersChanged(int delta) {
+        observedMembers += delta;
+    }
+
+    /**
+     * Add ids of the {@code node} and its descendants to {@link #ids} and make this list their owner.
+     *
+     * @param node inserted node
+     */
+    private void registerMembers(INode node) {
+        registered = 0;
+        try {
+            walker.walk(node, registrar);
+        } catch (RuntimeException e) {
+            // nodes inserted by other INode implementations are not checked before they are attached
+            walker.walk(node, rollback);
+            throw e;
+        }
+    }
+
+    private void registerMember(INode node) {
+        long id = node.getId();
+        if (id != NO_ID) {
+            INode old = ids.put(id, node);
+            if (old != null && old != node) {
+                ids.put(id, old);
+                throw new IllegalStateException(node + " has the same id=" + id + " as " + old);
+            }
+        }
+        if (node instanceof Node) {
+            Node n = (Node) node;
+            n.owner = this;
+            if (n.hasObservers()) {
+                observedMembers++;
+            }
+        } else {
+            // events of other nodes must be propagated through the ancestors
+            observedMembers++;
+        }
+    }
+
+    /**
+     * Check, that ids of the {@code node} and its descendants clash neither with ids of members,
+     * nor with each other. Called before the {@code node} is attached, so a failed insertion does not change
+     * the tree.
+     *
+     * @param node node to be inserted
+     * @throws IllegalStateException if an id is already taken
+     */
+    void checkIds(INode node) {
+        if (node.getChildren().isEmpty()) {
+            checkMemberId(node);
+            return;
+        }
+        try {
+            walker.walk(node, idChecker);
+        } finally {
+            incomingIds.clear();
+        }
+    }
+
+    /**
+     * Check ids of nodes inserted at once, see {@link #checkIds(INode)}.
+     *
+     * @param nodes nodes to be inserted
+     */
+    void checkIds(List<? extends INode> nodes) {
+        try {
+            for (int i = 0, size = nodes.size(); i < size; i++) {
+                walker.walk(nodes.get(i), idChecker);
+            }
+        } finally {
+            incomingIds.clear();
+        }
+    }
+
+    private void checkMemberId(INode node) {
+        long id = node.getId();
+        INode old = id != NO_ID ? ids.get(id) : null;
+        if (old != null && old != node) {
+            throw new IllegalStateException(node + " has the same id=" + id + " as " + old);
+        }
+    }
+
+    private void checkId(INode node) {
+        checkMemberId(node);
+        long id = node.getId();
+        if (id != NO_ID && !incomingIds.add(id)) {
+            throw new IllegalStateException(node + " has the same id=" + id + " as another inserted node");
+        }
+    }
+
+    /**
+     * Remove ids of the {@code node} and its descendants from {@link #ids}.
+     *
+     * @param node deleted node
+     */
+    private void unregisterMembers(INode node) {
+        walker.walk(node, unregistrar);
+    }
+
+    private void unregisterMember(INode node) {
+        long id = node.getId();
+        if (id != NO_ID && ids.get(id) == node) {
+            ids.remove(id);
+        }
+        if (node instanceof Node) {
+            Node n = (Node) node;
+            n.owner = null;
+            if (n.hasObservers()) {
+                observedMembers--;
+            }
+        } else {
+            observedMembers--;
+        }
+    }
+
+    /**
+     * Reattach {@code node} to the {@code newParent}, arguments must be checked already. If the {@code newParent}
+     * rejects the {@code node}, it is returned to its old place.
+     *
+     * @param node      node to move
+     * @param newParent new parent
+     * @param index     index in the {@code newParent}, or {@code -1} to let the {@code newParent} decide
+     * @return new position of the {@code node}, or {@code -1} if it is not visible after the move
+     */
+    private int moveChecked(INode node, INode newParent, int index) {
+        INode oldParent = node.getParent();
+        int oldIndex = oldParent.getChildren().indexOf(node);
+        int from = list.indexOf(node);
+        Node boundary = commonNodeAncestor(oldParent, newParent);
+        ignoreInvalidate = true;
+        movingChild = node;
+        moveBoundary = boundary;
+        try {
+            oldParent.delete(node);
+            try {
+                attach(newParent, index, node);
+            } catch (RuntimeException e) {
+                if (node.getParent() == null) {
+                    // rows of the node are still in the list, because changes were ignored
+                    attach(oldParent, oldIndex, node);
+                }
+                throw e;
+            }
+        } finally {
+            ignoreInvalidate = false;
+            movingChild = null;
+            moveBoundary = null;
+        }
+        int to = moveInternal(node, from);
+        boundary.dispatchReparented(oldParent, node);
+        return to;
+    }
+
+    /**
+     * @param child inserted or deleted child
+     * @param node  node, which receives the event
+     * @return {@code true}, if {@code child} is being moved and the event must not reach observers of the
+     * {@code node} and its ancestors
+     */
+    boolean isMoveBoundary(INode child, Node node) {
+        return child == movingChild && (node == moveBoundary || node == this);
+    }
+
+    /**
+     * @return the lowest common ancestor of {@code a} and {@code b}, which is a {@link Node}
+     */
+    private static Node commonNodeAncestor(INode a, INode b) {
+        int depthA = depth(a);
+        int depthB = depth(b);
+        for (; depthA > depthB; depthA--) {
+            a = a.getParent();
+        }
+        for (; depthB > depthA; depthB--) {
+            b = b.getParent();
+        }
+        while (a != b) {
+            a = a.getParent();
+            b = b.getParent();
+        }
+        while (!(a instanceof Node)) {
+            a = a.getParent();
+        }
+        return (Node) a;
+    }
+
+    private static int depth(INode node) {
+        int depth = 0;
+        for (INode parent = node.getParent(); parent != null; parent = parent.getParent()) {
+            depth++;
+        }
+        return depth;
+    }
+
+    /**
+     * Insert {@code child} to the {@code parent}, respecting order of {@link SortedNode}.
+     *
+     * @param parent parent
+     * @param index  index, or {@code -1} to let the {@code parent} decide
+     * @param child  child
+     */
+    private static void attach(INode parent, int index, INode child) {
+        if (index < 0 || parent instanceof SortedNode) {
+            parent.insert(child);
+        } else {
+            parent.insert(index, child);
+        }
+    }
+
+    private void checkMove(INode node, INode newParent) {
+        if (node == null || newParent == null) {
+            throw new IllegalArgumentException("node=" + node + ", newParent=" + newParent + " must not be null");
+        }
+        if (node.getParent() == null) {
+            throw new IllegalArgumentException(node + " has no parent");
+        }
+        if (!isChild(node)) {
+            throw new IllegalArgumentException(node + " is not a member of this list");
+        }
+        if (newParent != this && !isChild(newParent)) {
+            throw new IllegalArgumentException(newParent + " is not a member of this list");
+        }
+        for (INode parent = newParent; parent != null; parent = parent.getParent()) {
+            if (parent == node) {
+                throw new IllegalArgumentException(node + " cannot be moved to its own subtree");
             }
         }
     }
 
     @Override
     public void onInserted(INode child) {
+        registerMembers(child);
         if (!ignoreInvalidate) {
-            invalidate();
+            insertInternal(child);
+        }
+        Tracing.begin(Tracing.OBSERVERS);
+        try {
+            super.onInserted(child);
+        } finally {
+            Tracing.end();
+        }
+    }
+
+    @Override
+    public void onInsertedAll(List<? extends INode> children) {
+        for (int i = 0, size = children.size(); i < size; i++) {
+            try {
+                registerMembers(children.get(i));
+            } catch (RuntimeException e) {
+                for (int j = 0; j < i; j++) {
+                    unregisterMembers(children.get(j));
+                }
+                throw e;
+            }
+        }
+        if (!ignoreInvalidate) {
+            insertAllInternal(children);
+        }
+        Tracing.begin(Tracing.OBSERVERS);
+        try {
+            super.onInsertedAll(children);
+        } finally {
+            Tracing.end();
         }
-        super.onInserted(child);
     }
 
     @Override
     public void onChanged(INode node) {
         if (!ignoreInvalidate) {
-            invalidate();
+            changeInternal(node);
+        }
+        Tracing.begin(Tracing.OBSERVERS);
+        try {
+            super.onChanged(node);
+        } finally {
+            Tracing.end();
         }
-        super.onChanged(node);
     }
 
     @Override
     public void onDeleted(INode fromParent, INode child) {
+        unregisterMembers(child);
         if (!ignoreInvalidate) {
-            invalidate();
+            deleteInternal(child);
+        }
+        Tracing.begin(Tracing.OBSERVERS);
+        try {
+            super.onDeleted(fromParent, child);
+        } finally {
+            Tracing.end();
+        }
+    }
+
+    @Override
+    public void onDeletedAll(INode fromParent, List<? extends INode> children) {
+        for (int i = 0, size = children.size(); i < size; i++) {
+            unregisterMembers(children.get(i));
+        }
+        if (!ignoreInvalidate) {
+            deleteAllInternal(children);
+        }
+        Tracing.begin(Tracing.OBSERVERS);
+        try {
+            super.onDeletedAll(fromParent, children);
+        } finally {
+            Tracing.end();
+        }
+    }
+
+    @Override
+    public void onMoved(INode child, int fromIndex, int toIndex) {
+        if (!ignoreInvalidate) {
+            moveInternal(child, list.indexOf(child));
+        }
+        Tracing.begin(Tracing.OBSERVERS);
+        try {
+            super.onMoved(child, fromIndex, toIndex);
+        } finally {
+            Tracing.end();
+        }
+    }
+
+    @Override
+    public void onReparented(INode oldParent, INode child) {
+        // only dispatched by move(), which has already updated the list
+        Tracing.begin(Tracing.OBSERVERS);
+        try {
+            super.onReparented(oldParent, child);
+        } finally {
+            Tracing.end();
         }
-        super.onDeleted(fromParent, child);
     }
 
     /**
@@ -280,51 +1269,38 @@ public class ExpandableList extends Node implements List<INode> {
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
-        printNode(sb, this);
+        sb.append(isExpanded() ? "+ " : "─ ");
+        sb.append(getClass().getSimpleName());
+        sb.append("\n");
+        printChildren(sb, this, new StringBuilder("   "));
         return sb.toString();
     }
 
-    private static void printNode(StringBuilder sb, INode node) {
-        boolean hasParent = node.getParent() != null;
-        if (hasParent) {
-            // create parents chain
-            List<INode> parents = new ArrayList<>(1);
-            INode p = node.getParent();
-            while (p != null) {
-                parents.add(0, p);
-                p = p.getParent();
-            }
-            // the root node comes first
-            for (INode parent : parents) {
-                if (parent.getParent() != null) {
-                    List<? extends INode> children = parent.getParent().getChildren();
-                    if (children.get(children.size() - 1) != parent) {
-                        // if parent is not the last node of it's parent - print pipe
-                        sb.append("|  ");
-                        continue;
-                    }
-                }
-                // for other nodes print spaces
-                sb.append("   ");
-            }
-            List<? extends INode> children = node.getParent().getChildren();
-            if (children.get(children.size() - 1) == node) {
-                // check if node is last child of it's parent
-                sb.append("└");
-            } else {
-                sb.append("├");
-            }
-        }
-        sb.append(node.isExpanded() ? "+ " : "─ ");
-        sb.append(node.getClass().getSimpleName());
-        if (hasParent) {
+    /**
+     * Print children of the {@code node}.
+     *
+     * @param sb     target
+     * @param node   node
+     * @param prefix lines of the ancestors of children
+     */
+    private static void printChildren(StringBuilder sb, INode node, StringBuilder prefix) {
+        List<? extends INode> children = node.getChildren();
+        for (int i = 0, size = children.size(); i < size; i++) {
+            INode child = children.get(i);
+            boolean last = i == size - 1;
+            sb.append(prefix);
+            // check if node is last child of it's parent
+            sb.append(last ? "└" : "├");
+            sb.append(child.isExpanded() ? "+ " : "─ ");
+            sb.append(child.getClass().getSimpleName());
             // print parent's index
-            sb.append(String.format(" [%d] ", node.getParent().getChildren().indexOf(node)));
-        }
-        sb.append("\n");
-        // print children of the node
-        for (INode child : node.getChildren()) {
-            printNode(sb, child);
+            sb.append(" [").append(i).append("] ");
+            sb.append("\n");
+            int length = prefix.length();
+            // if parent is not the last node of it's parent - print pipe
+            prefix.append(last ? "   " : "|  ");
+            printChildren(sb, child, prefix);
+            prefix.setLength(length);
         }
     }
 
@@ -417,6 +1393,42 @@ public class ExpandableList extends Node implements List<INode> {
         return Collections.unmodifiableList(list.subList(from, to));
     }
 
+    /**
+     * Spliterator over visible nodes, which is {@link Spliterator#SIZED SIZED} and
+     * {@link Spliterator#SUBSIZED SUBSIZED}, so {@code stream().parallel()} splits the list evenly.
+     *
+     * @return spliterator over visible nodes
+     */
+    @RequiresApi(24)
+    @Override
+    public Spliterator<INode> spliterator() {
+        return list.spliterator();
+    }
+
+    /**
+     * Walk all members of this list (including collapsed ones), the list itself is not visited.
+     * <br>
+     * Members must not be inserted, deleted or moved during the walk.
+     *
+     * @param visitor visitor, depth of the top level nodes is {@code 0}
+     * @return {@code false}, if the walk was stopped by the {@code visitor}
+     */
+    public boolean walk(TreeWalker.Visitor visitor) {
+        return walker.walkChildren(this, visitor);
+    }
+
+    /**
+     * Spliterator over all members of this list (including collapsed ones) in depth-first order,
+     * the list itself is not included.
+     *
+     * @return spliterator over all members
+     */
+    @RequiresApi(24)
+    @Override
+    public Spliterator<INode> subtreeSpliterator() {
+        return new SubtreeSpliterator(null, children, absoluteSize());
+    }
+
     /**
      * Any modifications must be made by methods in {@link ExpandableList}.
      */
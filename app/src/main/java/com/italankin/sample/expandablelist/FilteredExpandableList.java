@@ -0,0 +1,528 @@
+package com.italankin.sample.expandablelist;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Read-only view of an {@link ExpandableList}, which contains only nodes matching a {@link Predicate}
+ * and ancestors of such nodes.
+ * <br>
+ * Node is a part of the view if it (or any of its descendants) matches the predicate and all of its parents
+ * are {@link INode#isExpanded() expanded}. Structural and expansion changes of the source list are tracked
+ * automatically, changes of the node data must be reported via {@link #refresh(INode)}.
+ */
+public class FilteredExpandableList extends AbstractList<INode> implements INode.Observer {
+
+    private static final int NONE = 0;
+    private static final int INSERTED = 1;
+    private static final int REMOVED = 2;
+
+    private final ExpandableList source;
+
+    /**
+     * Nodes which match the current predicate.
+     */
+    private final Set<INode> matched = Collections.newSetFromMap(new IdentityHashMap<INode, Boolean>());
+
+    /**
+     * Count of matched nodes in the subtree of the node (including the node itself).
+     * Only nodes with non-zero counts are stored.
+     */
+    private final Map<INode, Integer> counts = new IdentityHashMap<>();
+
+    /**
+     * Actual list of nodes.
+     */
+    private final List<INode> rows = new ArrayList<>();
+
+    private Predicate predicate;
+    private ListUpdateCallback callback;
+
+    /**
+     * Position in {@link #rows} of the next node in the old state, while reconciling.
+     */
+    private int cursor;
+
+    /**
+     * New content of the reconciled part of {@link #rows}.
+     */
+    private final List<INode> block = new ArrayList<>();
+
+    /**
+     * Event which is not dispatched yet, so adjacent events can be merged.
+     */
+    private int pendingType = NONE;
+    private int pendingPosition;
+    private int pendingCount;
+
+    private final TreeWalker walker = new TreeWalker();
+
+    /**
+     * Counts of matched nodes of the subtrees being {@link #match(INode) matched}, by depth.
+     */
+    private int[] matchCounts = new int[16];
+    private final TreeWalker.Visitor matcher = new TreeWalker.Visitor() {
+        @Override
+        public TreeWalker.Action enter(INode node, int depth) {
+            if (matchCounts.length == depth) {
+                matchCounts = Arrays.copyOf(matchCounts, depth * 2);
+            }
+            int count = 0;
+            if (predicate.test(node)) {
+                matched.add(node);
+                count++;
+            }
+            matchCounts[depth] = count;
+            return TreeWalker.Action.CONTINUE;
+        }
+
+        @Override
+        public void leave(INode node, int depth) {
+            int count = matchCounts[depth];
+            if (count > 0) {
+                counts.put(node, count);
+                if (depth > 0) {
+                    matchCounts[depth - 1] += count;
+                }
+            }
+        }
+    };
+    private final TreeWalker.Visitor unmatcher = (node, depth) -> {
+        if (counts.remove(node) == null) {
+            // there are no matches in the subtree
+            return TreeWalker.Action.SKIP_CHILDREN;
+        }
+        matched.remove(node);
+        return TreeWalker.Action.CONTINUE;
+    };
+    private final TreeWalker.Visitor collector = (node, depth) -> {
+        if (!counts.containsKey(node)) {
+            return TreeWalker.Action.SKIP_CHILDREN;
+        }
+        block.add(node);
+        return node.isExpanded() ? TreeWalker.Action.CONTINUE : TreeWalker.Action.SKIP_CHILDREN;
+    };
+
+    /**
+     * Position of the part of {@link #rows}, which is being reconciled.
+     */
+    private int reconcileStart;
+    /**
+     * Walks subtrees together with the old content of {@link #rows}.
+     */
+    private final TreeWalker.Visitor reconciler = (node, depth) -> {
+        boolean was = cursor < rows.size() && rows.get(cursor) == node;
+        boolean now = counts.containsKey(node);
+        if (was) {
+            cursor++;
+        } else if (!now) {
+            // neither the node nor its descendants are part of the view
+            return TreeWalker.Action.SKIP_CHILDREN;
+        }
+        int position = reconcileStart + block.size();
+        if (now) {
+            block.add(node);
+            if (!was) {
+                dispatch(INSERTED, position, 1);
+            }
+        } else {
+            dispatch(REMOVED, position, 1);
+        }
+        return node.isExpanded() ? TreeWalker.Action.CONTINUE : TreeWalker.Action.SKIP_CHILDREN;
+    };
+
+    public FilteredExpandableList(ExpandableList source, Predicate predicate) {
+        this.source = source;
+        this.predicate = predicate;
+        for (INode child : source.getChildren()) {
+            match(child);
+        }
+        reconcileAll();
+        source.addObserver(this);
+    }
+
+    /**
+     * Set callback for the positional changes of this list.
+     *
+     * @param callback callback, can be {@code null}
+     */
+    public void setUpdateCallback(ListUpdateCallback callback) {
+        this.callback = callback;
+    }
+
+    /**
+     * Set new predicate, all nodes of the source list are evaluated again.
+     *
+     * @param predicate predicate
+     */
+    public void setPredicate(Predicate predicate) {
+        this.predicate = predicate;
+        matched.clear();
+        counts.clear();
+        for (INode child : source.getChildren()) {
+            match(child);
+        }
+        reconcileAll();
+    }
+
+    /**
+     * Set a predicate, which is narrower than the current one: any node matching it also matches the current
+     * predicate. Only currently matched nodes are evaluated.
+     *
+     * @param predicate narrower predicate
+     */
+    public void refine(Predicate predicate) {
+        this.predicate = predicate;
+        List<INode> rejected = new ArrayList<>();
+        for (INode node : matched) {
+            if (!predicate.test(node)) {
+                rejected.add(node);
+            }
+        }
+        for (INode node : rejected) {
+            matched.remove(node);
+            adjust(node, -1);
+        }
+        reconcileAll();
+    }
+
+    /**
+     * Evaluate the predicate for the {@code node} again, after its data is changed.
+     *
+     * @param node changed node
+     */
+    public void refresh(INode node) {
+        boolean match = predicate.test(node);
+        INode top = null;
+        if (match != matched.contains(node)) {
+            if (match) {
+                matched.add(node);
+            } else {
+                matched.remove(node);
+            }
+            top = adjust(node, match ? 1 : -1);
+        }
+        if (top != null) {
+            if (isReachable(top)) {
+                reconcile(top, positionOf(top));
+            }
+        } else {
+            int position = rows.indexOf(node);
+            if (position >= 0) {
+                dispatchChanged(position, null);
+            }
+        }
+    }
+
+    /**
+     * @param node node
+     * @return {@code true}, if {@code node} itself matches the current predicate
+     */
+    public boolean matches(INode node) {
+        return matched.contains(node);
+    }
+
+    /**
+     * Stop tracking changes of the source list.
+     */
+    public void release() {
+        source.removeObserver(this);
+    }
+
+    @Override
+    public INode get(int index) {
+        return rows.get(index);
+    }
+
+    @Override
+    public int size() {
+        return rows.size();
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // Observer
+    ///////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void onInserted(INode child) {
+        int count = match(child);
+        if (count == 0) {
+            return;
+        }
+        INode top = adjust(child.getParent(), count);
+        if (top == null) {
+            top = child;
+        }
+        if (isReachable(top)) {
+            reconcile(top, positionOf(top));
+        }
+    }
+
+    @Override
+    public void onChanged(INode node) {
+        int position = rows.indexOf(node);
+        if (position < 0) {
+            return;
+        }
+        if (node.isExpanded()) {
+            for (INode child : node.getChildren()) {
+                collect(child);
+            }
+            rows.addAll(position + 1, block);
+            if (!block.isEmpty()) {
+                dispatch(INSERTED, position + 1, block.size());
+            }
+            block.clear();
+        } else {
+            int end = blockEnd(position);
+            rows.subList(position + 1, end).clear();
+            if (end > position + 1) {
+                dispatch(REMOVED, position + 1, end - position - 1);
+            }
+        }
+        dispatchChanged(position, ChangePayload.EXPANSION_CHANGED);
+    }
+
+    @Override
+    public void onDeleted(INode oldParent, INode child) {
+        Integer count = counts.get(child);
+        if (count == null) {
+            return;
+        }
+        int position = rows.indexOf(child);
+        if (position >= 0) {
+            int end = blockEnd(position);
+            rows.subList(position, end).clear();
+            dispatch(REMOVED, position, end - position);
+            flush();
+        }
+        unmatch(child);
+        INode top = adjust(oldParent, -count);
+        if (top != null && isReachable(top)) {
+            reconcile(top, rows.indexOf(top));
+        }
+    }
+
+    @Override
+    public void onMoved(INode child, int fromIndex, int toIndex) {
+        int from = rows.indexOf(child);
+        if (from < 0) {
+            return;
+        }
+        List<INode> moved = rows.subList(from, blockEnd(from));
+        int count = moved.size();
+        block.addAll(moved);
+        moved.clear();
+        int to = positionOf(child);
+        rows.addAll(to, block);
+        block.clear();
+        if (callback != null && from != to) {
+            callback.onRangeMoved(from, to, count);
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // Internal
+    ///////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Evaluate predicate for every node in the subtree of {@code node}.
+     *
+     * @param node node
+     * @return count of matched nodes in the subtree
+     */
+    private int match(INode node) {
+        walker.walk(node, matcher);
+        return matchCounts[0];
+    }
+
+    /**
+     * Forget matches in the subtree of {@code node}.
+     *
+     * @param node node
+     */
+    private void unmatch(INode node) {
+        walker.walk(node, unmatcher);
+    }
+
+    /**
+     * Add {@code delta} to the counts of {@code node} and its ancestors.
+     *
+     * @param node  node
+     * @param delta change of the count
+     * @return the topmost node, which was added to or removed from the view, or {@code null}
+     */
+    private INode adjust(INode node, int delta) {
+        INode top = null;
+        for (INode n = node; n != null && n != source; n = n.getParent()) {
+            Integer old = counts.get(n);
+            int count = (old != null ? old : 0) + delta;
+            if (count > 0) {
+                counts.put(n, count);
+            } else {
+                counts.remove(n);
+            }
+            if ((old == null) != (count == 0)) {
+                top = n;
+            }
+        }
+        return top;
+    }
+
+    /**
+     * @param node node
+     * @return {@code true}, if {@code node} is a member of the source list and all of its parents are expanded
+     */
+    private boolean isReachable(INode node) {
+        INode parent = node.getParent();
+        while (parent != source) {
+            if (parent == null || !parent.isExpanded()) {
+                return false;
+            }
+            parent = parent.getParent();
+        }
+        return true;
+    }
+
+    /**
+     * Find position of the {@code node} in {@link #rows}, or the position, where it should be inserted.
+     *
+     * @param node reachable node
+     * @return position of the node
+     */
+    private int positionOf(INode node) {
+        int position = rows.indexOf(node);
+        if (position >= 0) {
+            return position;
+        }
+        INode parent = node.getParent();
+        List<? extends INode> siblings = parent.getChildren();
+        for (int i = siblings.indexOf(node) - 1; i >= 0; i--) {
+            INode sibling = siblings.get(i);
+            if (counts.containsKey(sibling)) {
+                return blockEnd(rows.indexOf(sibling));
+            }
+        }
+        return parent == source ? 0 : rows.indexOf(parent) + 1;
+    }
+
+    /**
+     * @param position position of a node in {@link #rows}
+     * @return position after the last descendant of the node
+     */
+    private int blockEnd(int position) {
+        INode node = rows.get(position);
+        int end = position + 1;
+        while (end < rows.size() && isAncestor(node, rows.get(end))) {
+            end++;
+        }
+        return end;
+    }
+
+    private static boolean isAncestor(INode ancestor, INode node) {
+        for (INode parent = node.getParent(); parent != null; parent = parent.getParent()) {
+            if (parent == ancestor) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Add {@code node} and its visible descendants to the {@link #block}.
+     *
+     * @param node node
+     */
+    private void collect(INode node) {
+        walker.walk(node, collector);
+    }
+
+    private void reconcileAll() {
+        cursor = 0;
+        reconcileStart = 0;
+        walker.walkChildren(source, reconciler);
+        replace(0);
+    }
+
+    /**
+     * Update part of {@link #rows} occupied by the subtree of {@code node}, according to the current counts.
+     *
+     * @param node     reachable node
+     * @param position position of the node (or the position, where it should be inserted)
+     */
+    private void reconcile(INode node, int position) {
+        cursor = position;
+        reconcileStart = position;
+        walker.walk(node, reconciler);
+        replace(position);
+    }
+
+    /**
+     * Replace the reconciled part of {@link #rows} with the {@link #block}.
+     *
+     * @param start position of the reconciled part
+     */
+    private void replace(int start) {
+        flush();
+        rows.subList(start, cursor).clear();
+        rows.addAll(start, block);
+        block.clear();
+    }
+
+    private void dispatch(int type, int position, int count) {
+        if (pendingType == type) {
+            if (type == INSERTED && pendingPosition + pendingCount == position) {
+                pendingCount += count;
+                return;
+            }
+            if (type == REMOVED && pendingPosition == position) {
+                pendingCount += count;
+                return;
+            }
+        }
+        flush();
+        pendingType = type;
+        pendingPosition = position;
+        pendingCount = count;
+    }
+
+    private void dispatchChanged(int position, Object payload) {
+        flush();
+        if (callback != null) {
+            callback.onChanged(position, 1, payload);
+        }
+    }
+
+    private void flush() {
+        int type = pendingType;
+        pendingType = NONE;
+        if (callback == null) {
+            return;
+        }
+        switch (type) {
+            case INSERTED:
+                callback.onInserted(pendingPosition, pendingCount);
+                break;
+            case REMOVED:
+                callback.onRemoved(pendingPosition, pendingCount);
+                break;
+        }
+    }
+
+    /**
+     * Predicate for filtering nodes.
+     */
+    public interface Predicate {
+        /**
+         * @param node node
+         * @return {@code true}, if {@code node} should be included in the list
+         */
+        boolean test(INode node);
+    }
+}
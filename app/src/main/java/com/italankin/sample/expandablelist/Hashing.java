@@ -0,0 +1,22 @@
+package com.italankin.sample.expandablelist;
+
+final class Hashing {
+
+    private Hashing() {
+    }
+
+    /**
+     * Spread bits of the hash (finalizer of MurmurHash3).
+     *
+     * @param h hash
+     * @return mixed hash
+     */
+    static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
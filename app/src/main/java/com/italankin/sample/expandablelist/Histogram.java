@@ -0,0 +1,129 @@
+package com.italankin.sample.expandablelist;
+
+/**
+ * Histogram of non-negative values with the relative precision of 1/16.
+ * <br>
+ * Values are counted in buckets, which are linear within each power of two (similar to HdrHistogram),
+ * so recording is {@code O(1)}, does not allocate and the memory does not depend on the count of values.
+ */
+public class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final long[] counts = new long[(64 - SUB_BUCKET_BITS) * SUB_BUCKETS];
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max = 0;
+
+    /**
+     * Record {@code value}.
+     *
+     * @param value non-negative value
+     */
+    public void record(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("value=" + value + " must not be negative");
+        }
+        counts[indexOf(value)]++;
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * @return count of recorded values
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return min recorded value, or {@code 0}, if there are no values
+     */
+    public long getMin() {
+        return count > 0 ? min : 0;
+    }
+
+    /**
+     * @return max recorded value, or {@code 0}, if there are no values
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * @return mean of recorded values, or {@code 0}, if there are no values
+     */
+    public double getMean() {
+        return count > 0 ? (double) sum / count : 0;
+    }
+
+    /**
+     * @return sum of recorded values
+     */
+    public long getSum() {
+        return sum;
+    }
+
+    /**
+     * Get value at {@code percentile}, with the precision of the histogram.
+     *
+     * @param percentile percentile, from {@code 0} to {@code 100}
+     * @return the highest value, which is equivalent to the value at {@code percentile}
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(highestEquivalentValue(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Forget all recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = 0;
+        }
+        count = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d, min=%d, mean=%.1f, p50=%d, p90=%d, p99=%d, max=%d",
+                count, getMin(), getMean(), getValueAtPercentile(50), getValueAtPercentile(90),
+                getValueAtPercentile(99), max);
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -7,6 +7,11 @@ import java.util.List;
  */
 public interface INode {
 
+    /**
+     * Id of nodes, which do not provide one. Such nodes cannot be found by id and do not have stable ids.
+     */
+    long NO_ID = -1;
+
     /**
      * Expand or collapse node.
      *
@@ -48,6 +53,31 @@ public interface INode {
      */
     boolean isExpanded();
 
+    /**
+     * Get id of this node. Id does not change during the lifetime of the node and must be unique
+     * among nodes of the same {@link ExpandableList}.
+     * <br>
+     * Default implementation returns {@link #NO_ID}, so implementations written before ids were introduced
+     * keep working, but cannot be found with {@link ExpandableList#findById(long)}.
+     *
+     * @return id of the node, or {@link #NO_ID}
+     */
+    default long getId() {
+        return NO_ID;
+    }
+
+    /**
+     * Get view type of this node.
+     * <br>
+     * Default implementation resolves type by the class of the node.
+     *
+     * @return view type
+     * @see ViewTypes
+     */
+    default int getViewType() {
+        return ViewTypes.of(getClass());
+    }
+
     /**
      * Set parent for this node.
      * <br>
@@ -108,5 +138,59 @@ public interface INode {
          * @param child     removed child
          */
         void onDeleted(INode oldParent, INode child);
+
+        /**
+         * Called when {@code child} is moved to another index in its {@link INode#getParent() parent}.
+         *
+         * @param child     moved child
+         * @param fromIndex previous index of the child
+         * @param toIndex   new index of the child
+         */
+        default void onMoved(INode child, int fromIndex, int toIndex) {
+        }
+
+        /**
+         * Called when {@code child} was moved from {@code oldParent} to its current {@link INode#getParent() parent}
+         * (which can be the same), e.g. by {@link ExpandableList#move(INode, INode, int)}. Only observers of the
+         * common ancestors of both parents receive this event, others receive {@link #onDeleted(INode, INode)}
+         * or {@link #onInserted(INode)}.
+         * <br>
+         * Default implementation reports the move via {@link #onDeleted(INode, INode)} and
+         * {@link #onInserted(INode)}.
+         *
+         * @param oldParent old parent
+         * @param child     moved child, which is already attached to the new parent
+         */
+        default void onReparented(INode oldParent, INode child) {
+            onDeleted(oldParent, child);
+            onInserted(child);
+        }
+
+        /**
+         * Called when adjacent {@code children} are inserted to their {@link INode#getParent() parent} at once.
+         * <br>
+         * Default implementation reports every child via {@link #onInserted(INode)}.
+         *
+         * @param children inserted children, in order
+         */
+        default void onInsertedAll(List<? extends INode> children) {
+            for (int i = 0, size = children.size(); i < size; i++) {
+                onInserted(children.get(i));
+            }
+        }
+
+        /**
+         * Called when adjacent {@code children} are removed from {@code oldParent} at once.
+         * <br>
+         * Default implementation reports every child via {@link #onDeleted(INode, INode)}.
+         *
+         * @param oldParent old parent
+         * @param children  removed children, in order
+         */
+        default void onDeletedAll(INode oldParent, List<? extends INode> children) {
+            for (int i = 0, size = children.size(); i < size; i++) {
+                onDeleted(oldParent, children.get(i));
+            }
+        }
     }
 }
@@ -0,0 +1,42 @@
+package com.italankin.sample.expandablelist;
+
+/**
+ * Receives measurements of {@link ExpandableList} operations.
+ * <br>
+ * Metrics are not collected at all, unless a listener is {@link ExpandableList#setMetrics(ListMetrics) set}.
+ *
+ * @see MetricsRecorder
+ */
+public interface ListMetrics {
+
+    /**
+     * Operations of the list.
+     */
+    enum Operation {
+        INVALIDATE,
+        EXPAND,
+        COLLAPSE,
+        INSERT,
+        DELETE,
+        MOVE
+    }
+
+    /**
+     * Called after an operation on the list is finished.
+     *
+     * @param operation      operation
+     * @param durationNanos  duration of the operation, including dispatching of updates
+     * @param rows           count of rows added, removed or moved
+     * @param allocatedBytes rough estimate of the memory allocated for temporary structures
+     */
+    void onOperation(Operation operation, long durationNanos, int rows, long allocatedBytes);
+
+    /**
+     * Called after the whole list is {@link ExpandableList#invalidate() invalidated}.
+     *
+     * @param size     count of all nodes of the tree, including invisible ones
+     * @param maxDepth max depth of the tree, {@code 0} for the list without grandchildren
+     */
+    default void onTreeStats(int size, int maxDepth) {
+    }
+}
@@ -0,0 +1,190 @@
+package com.italankin.sample.expandablelist;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Copy of a list, which is advanced to the current state of the source list by replaying positional changes,
+ * so the cost of an update is proportional to the count of changed items, not to the size of the list.
+ * <br>
+ * Removed and moved items are spliced within the copy. Inserted and changed items are copied from the source
+ * by {@link #sync()}, after all changes of the batch were replayed, because only then positions of the copy
+ * match positions of the source.
+ *
+ * @param <T> type of items
+ * @see UpdateDispatcher#setSnapshot(ListSnapshot)
+ */
+public class ListSnapshot<T> extends AbstractList<T> implements ListUpdateCallback {
+
+    private final List<? extends T> source;
+    private final ArrayList<T> items;
+
+    /**
+     * Ranges of items, which must be copied from the source on {@link #sync()}, as {@code [start, end)} pairs.
+     */
+    private int[] stale = new int[16];
+    private int staleCount = 0;
+    /**
+     * Stale ranges of the moved items, relative to the start of the moved block, reused between moves.
+     */
+    private int[] movedStale = new int[16];
+    /**
+     * Moved items, reused between moves.
+     */
+    private final List<T> block = new ArrayList<>();
+
+    /**
+     * @param source source list, the snapshot is initialized with its current state
+     */
+    public ListSnapshot(List<? extends T> source) {
+        this.source = source;
+        this.items = new ArrayList<>(source);
+    }
+
+    @Override
+    public T get(int index) {
+        return items.get(index);
+    }
+
+    @Override
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * Copy inserted and changed items from the source. Must be called after all changes were replayed, when
+     * the source is in the state, which the changes lead to.
+     */
+    public void sync() {
+        for (int i = 0; i < staleCount; i += 2) {
+            for (int position = stale[i], end = stale[i + 1]; position < end; position++) {
+                items.set(position, source.get(position));
+            }
+        }
+        staleCount = 0;
+    }
+
+    /**
+     * Replace the snapshot with the current state of the source, e.g. when changes were not tracked.
+     */
+    public void reset() {
+        staleCount = 0;
+        items.clear();
+        items.addAll(source);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // ListUpdateCallback
+    ///////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void onInserted(int position, int count) {
+        items.addAll(position, Collections.<T>nCopies(count, null));
+        shiftStale(position, count);
+        addStale(position, position + count);
+    }
+
+    @Override
+    public void onRemoved(int position, int count) {
+        items.subList(position, position + count).clear();
+        collapseStale(position, count);
+    }
+
+    @Override
+    public void onMoved(int fromPosition, int toPosition) {
+        onRangeMoved(fromPosition, toPosition, 1);
+    }
+
+    @Override
+    public void onRangeMoved(int fromPosition, int toPosition, int count) {
+        if (fromPosition == toPosition) {
+            return;
+        }
+        List<T> moved = items.subList(fromPosition, fromPosition + count);
+        block.addAll(moved);
+        moved.clear();
+        items.addAll(toPosition, block);
+        block.clear();
+        // stale parts of the moved block keep their offsets within the block
+        int fromEnd = fromPosition + count;
+        int movedCount = 0;
+        for (int i = 0; i < staleCount; i += 2) {
+            int start = Math.max(stale[i], fromPosition);
+            int end = Math.min(stale[i + 1], fromEnd);
+            if (start < end) {
+                if (movedCount == movedStale.length) {
+                    movedStale = Arrays.copyOf(movedStale, movedCount * 2);
+                }
+                movedStale[movedCount++] = start - fromPosition;
+                movedStale[movedCount++] = end - fromPosition;
+            }
+        }
+        collapseStale(fromPosition, count);
+        shiftStale(toPosition, count);
+        for (int i = 0; i < movedCount; i += 2) {
+            addStale(movedStale[i] + toPosition, movedStale[i + 1] + toPosition);
+        }
+    }
+
+    @Override
+    public void onChanged(int position, int count, Object payload) {
+        // item at the position can be replaced with another one
+        addStale(position, position + count);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // Internal
+    ///////////////////////////////////////////////////////////////////////////
+
+    private void addStale(int start, int end) {
+        if (staleCount == stale.length) {
+            stale = Arrays.copyOf(stale, staleCount * 2);
+        }
+        stale[staleCount++] = start;
+        stale[staleCount++] = end;
+    }
+
+    /**
+     * Shift stale ranges after {@code count} items were inserted at {@code position}, ranges containing
+     * the position are split.
+     */
+    private void shiftStale(int position, int count) {
+        for (int i = 0, size = staleCount; i < size; i += 2) {
+            int start = stale[i], end = stale[i + 1];
+            if (start >= position) {
+                stale[i] = start + count;
+                stale[i + 1] = end + count;
+            } else if (end > position) {
+                stale[i + 1] = position;
+                addStale(position + count, end + count);
+            }
+        }
+    }
+
+    /**
+     * Shift stale ranges after {@code count} items were removed at {@code position}, removed parts of ranges
+     * are dropped.
+     */
+    private void collapseStale(int position, int count) {
+        int size = 0;
+        for (int i = 0; i < staleCount; i += 2) {
+            int start = collapse(stale[i], position, count);
+            int end = collapse(stale[i + 1], position, count);
+            if (start < end) {
+                stale[size++] = start;
+                stale[size++] = end;
+            }
+        }
+        staleCount = size;
+    }
+
+    private static int collapse(int x, int position, int count) {
+        if (x <= position) {
+            return x;
+        }
+        return x >= position + count ? x - count : position;
+    }
+}
@@ -0,0 +1,64 @@
+package com.italankin.sample.expandablelist;
+
+/**
+ * Receives positional changes of a flat list.
+ * <br>
+ * Events are dispatched sequentially: positions of each event refer to the state of the list
+ * after all previous events were applied.
+ */
+public interface ListUpdateCallback {
+
+    /**
+     * Called when {@code count} items are inserted at {@code position}.
+     *
+     * @param position position of the first inserted item
+     * @param count    number of inserted items
+     */
+    void onInserted(int position, int count);
+
+    /**
+     * Called when {@code count} items are removed from {@code position}.
+     *
+     * @param position position of the first removed item
+     * @param count    number of removed items
+     */
+    void onRemoved(int position, int count);
+
+    /**
+     * Called when an item is moved from {@code fromPosition} to {@code toPosition}.
+     *
+     * @param fromPosition previous position of the item
+     * @param toPosition   new position of the item
+     */
+    void onMoved(int fromPosition, int toPosition);
+
+    /**
+     * Called when {@code count} adjacent items are moved from {@code fromPosition} to {@code toPosition}.
+     * <br>
+     * Default implementation reports every item via {@link #onMoved(int, int)}.
+     *
+     * @param fromPosition previous position of the first item
+     * @param toPosition   new position of the first item
+     * @param count        number of moved items
+     */
+    default void onRangeMoved(int fromPosition, int toPosition, int count) {
+        if (fromPosition > toPosition) {
+            for (int i = 0; i < count; i++) {
+                onMoved(fromPosition + i, toPosition + i);
+            }
+        } else if (fromPosition < toPosition) {
+            for (int i = 0; i < count; i++) {
+                onMoved(fromPosition, toPosition + count - 1);
+            }
+        }
+    }
+
+    /**
+     * Called when {@code count} items at {@code position} are changed.
+     *
+     * @param position position of the first changed item
+     * @param count    number of changed items
+     * @param payload  optional description of the change, can be {@code null}
+     */
+    void onChanged(int position, int count, Object payload);
+}
@@ -0,0 +1,107 @@
+package com.italankin.sample.expandablelist;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * In-memory {@link ListMetrics}, which keeps histograms of durations and affected rows for every operation.
+ * <br>
+ * Recorder is not thread-safe, it must be used on the thread the list is modified on.
+ */
+public class MetricsRecorder implements ListMetrics {
+
+    private final Map<Operation, Histogram> durations = new EnumMap<>(Operation.class);
+    private final Map<Operation, Histogram> rows = new EnumMap<>(Operation.class);
+    private long allocatedBytes;
+    private int treeSize;
+    private int maxDepth;
+
+    public MetricsRecorder() {
+        for (Operation operation : Operation.values()) {
+            durations.put(operation, new Histogram());
+            rows.put(operation, new Histogram());
+        }
+    }
+
+    @Override
+    public void onOperation(Operation operation, long durationNanos, int rows, long allocatedBytes) {
+        durations.get(operation).record(durationNanos);
+        this.rows.get(operation).record(rows);
+        this.allocatedBytes += allocatedBytes;
+    }
+
+    @Override
+    public void onTreeStats(int size, int maxDepth) {
+        this.treeSize = size;
+        this.maxDepth = Math.max(this.maxDepth, maxDepth);
+    }
+
+    /**
+     * @param operation operation
+     * @return histogram of durations of the {@code operation} in nanoseconds
+     */
+    public Histogram getDurations(Operation operation) {
+        return durations.get(operation);
+    }
+
+    /**
+     * @param operation operation
+     * @return histogram of rows affected by the {@code operation}
+     */
+    public Histogram getRows(Operation operation) {
+        return rows.get(operation);
+    }
+
+    /**
+     * @return estimate of total memory allocated by operations
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * @return size of the tree at the last invalidation
+     */
+    public int getTreeSize() {
+        return treeSize;
+    }
+
+    /**
+     * @return max observed depth of the tree
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Forget all recorded values.
+     */
+    public void reset() {
+        for (Operation operation : Operation.values()) {
+            durations.get(operation).reset();
+            rows.get(operation).reset();
+        }
+        allocatedBytes = 0;
+        treeSize = 0;
+        maxDepth = 0;
+    }
+
+    /**
+     * @return human readable report of recorded values
+     */
+    public String dump() {
+        StringBuilder sb = new StringBuilder();
+        for (Operation operation : Operation.values()) {
+            Histogram duration = durations.get(operation);
+            if (duration.getCount() == 0) {
+                continue;
+            }
+            sb.append(operation).append('\n');
+            sb.append("  duration, ns: ").append(duration).append('\n');
+            sb.append("  rows: ").append(rows.get(operation)).append('\n');
+        }
+        sb.append("allocated, bytes: ").append(allocatedBytes).append('\n');
+        sb.append("tree size: ").append(treeSize).append(", max depth: ").append(maxDepth).append('\n');
+        return sb.toString();
+    }
+}
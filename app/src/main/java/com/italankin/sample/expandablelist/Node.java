@@ -1,27 +1,111 @@
 package com.italankin.sample.expandablelist;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicLong;
+
+import androidx.annotation.RequiresApi;
 
 /**
  * Base implementation of list node.
  */
 public class Node implements INode, INode.Observer, Iterable<INode> {
 
+    /**
+     * Automatically assigned ids are taken from {@code [Long.MIN_VALUE, MIN_USER_ID)}, so they never clash
+     * with user supplied ones.
+     */
+    private static final AtomicLong NEXT_ID = new AtomicLong(Long.MIN_VALUE);
+    /**
+     * The smallest user supplied id.
+     */
+    public static final long MIN_USER_ID = Long.MIN_VALUE / 2;
+
     protected INode parent = null;
     protected boolean expanded = false;
-    protected final List<INode> children = new LinkedList<>();
+    protected final List<INode> children = new ArrayList<>();
+    /**
+     * Read-only view of {@link #children}, created on the first {@link #getChildren()} call, so nodes which are
+     * never asked for children do not keep a view. Like the array of an empty {@link ArrayList}, it is only
+     * allocated when needed.
+     */
+    private List<INode> childrenView;
+
+    /**
+     * The first observer. Parent, which is a {@link Node}, is notified directly and is not registered as observer.
+     */
+    private Observer observer;
+
+    /**
+     * Other observers, allocated only when necessary.
+     */
+    private List<Observer> observers;
+
+    /**
+     * List, this node is a member of.
+     */
+    ExpandableList owner;
+
+    private final long id;
+
+    /**
+     * View type, resolved on the first {@link #getViewType()}, because the class of the node does not change.
+     * Threads may race to resolve it, but they resolve the same value.
+     */
+    private int viewType = -1;
+
+    /**
+     * Cached hash of the subtree. If the hash of a node is not valid, hashes of all its ancestors are not valid too.
+     */
+    private long subtreeHash;
+    private boolean subtreeHashValid = false;
 
-    private final List<Observer> observers = new ArrayList<>(1);
+    /**
+     * Create node with an automatically assigned id.
+     */
+    public Node() {
+        this.id = NEXT_ID.getAndIncrement();
+        if (id >= MIN_USER_ID) {
+            throw new IllegalStateException("Automatic ids are exhausted");
+        }
+    }
+
+    /**
+     * Create node with the user supplied id, e.g. a primary key of the data it represents.
+     * <br>
+     * Automatically assigned ids are less than {@link #MIN_USER_ID}, so user supplied ids never clash with them.
+     *
+     * @param id id of the node, not less than {@link #MIN_USER_ID} and not {@link #NO_ID}
+     * @see #getId()
+     */
+    public Node(long id) {
+        if (id == NO_ID) {
+            throw new IllegalArgumentException("id=" + NO_ID + " is reserved");
+        }
+        if (id < MIN_USER_ID) {
+            throw new IllegalArgumentException("id=" + id + " is reserved for automatic ids, must be >= " + MIN_USER_ID);
+        }
+        this.id = id;
+    }
 
     @Override
     public void setExpanded(boolean expanded) {
         if (this.expanded != expanded) {
             this.expanded = expanded;
-            onChanged(this);
+            ExpandableList owner = directOwner();
+            if (owner != null) {
+                owner.onChanged(this);
+            } else {
+                onChanged(this);
+            }
         }
     }
 
@@ -35,14 +119,87 @@ public class Node implements INode, INode.Observer, Iterable<INode> {
         if (child.getParent() != null) {
             throw new IllegalStateException(child + " already has parent");
         }
+        ExpandableList list = list();
+        if (list != null) {
+            list.checkIds(child);
+        }
         children.add(index, child);
         child.setParent(this);
-        child.addObserver(this);
+        if (!(child instanceof Node)) {
+            child.addObserver(this);
+        }
+        invalidateSubtreeHash();
         int inserted = countVisible(child);
-        onInserted(child);
+        ExpandableList owner = directOwner();
+        if (owner != null) {
+            owner.onInserted(child);
+        } else {
+            onInserted(child);
+        }
         return inserted;
     }
 
+    /**
+     * Insert {@code children} to the end of this node.
+     *
+     * @param children children
+     * @return count of visible inserted nodes
+     * @see #insertAll(int, Collection)
+     */
+    public int insertAll(Collection<? extends INode> children) {
+        return insertAll(this.children.size(), children);
+    }
+
+    /**
+     * Insert {@code children} at {@code index} at once: children are attached with a single array copy
+     * and observers receive a single {@link Observer#onInsertedAll(List)} event.
+     *
+     * @param index    index of the first child
+     * @param children children, which do not have parents
+     * @return count of visible inserted nodes
+     */
+    public int insertAll(int index, Collection<? extends INode> children) {
+        if (index < 0 || index > this.children.size()) {
+            throw new IndexOutOfBoundsException("index=" + index + " is out of bounds: [0, " + this.children.size() + "]");
+        }
+        List<INode> inserted = new ArrayList<>(children);
+        if (inserted.isEmpty()) {
+            return 0;
+        }
+        Map<INode, Boolean> unique = new IdentityHashMap<>(inserted.size());
+        for (INode child : inserted) {
+            if (child.getParent() != null) {
+                throw new IllegalStateException(child + " already has parent");
+            }
+            if (unique.put(child, Boolean.TRUE) != null) {
+                throw new IllegalArgumentException(child + " is inserted twice");
+            }
+        }
+        ExpandableList list = list();
+        if (list != null) {
+            list.checkIds(inserted);
+        }
+        this.children.addAll(index, inserted);
+        int count = 0;
+        for (int i = 0, size = inserted.size(); i < size; i++) {
+            INode child = inserted.get(i);
+            child.setParent(this);
+            if (!(child instanceof Node)) {
+                child.addObserver(this);
+            }
+            count += countVisible(child);
+        }
+        invalidateSubtreeHash();
+        List<INode> view = Collections.unmodifiableList(inserted);
+        ExpandableList owner = directOwner();
+        if (owner != null) {
+            owner.onInsertedAll(view);
+        } else {
+            onInsertedAll(view);
+        }
+        return count;
+    }
+
     public int delete(int index) {
         return delete(children.get(index));
     }
@@ -56,17 +213,143 @@ public class Node implements INode, INode.Observer, Iterable<INode> {
             return 0;
         }
         child.setParent(null);
-        child.removeObserver(this);
+        if (!(child instanceof Node)) {
+            child.removeObserver(this);
+        }
+        invalidateSubtreeHash();
         int removed = countVisible(child);
-        onDeleted(this, child);
+        ExpandableList owner = directOwner();
+        if (owner != null) {
+            owner.onDeleted(this, child);
+        } else {
+            onDeleted(this, child);
+        }
         return removed;
     }
 
+    /**
+     * Delete children in the range {@code [from, to)} at once: children are detached with a single array copy
+     * and observers receive a single {@link Observer#onDeletedAll(INode, List)} event.
+     *
+     * @param from index of the first child, inclusive
+     * @param to   index of the last child, exclusive
+     * @return count of visible deleted nodes
+     */
+    public int deleteRange(int from, int to) {
+        if (from < 0 || to > children.size() || from > to) {
+            throw new IndexOutOfBoundsException("from=" + from + ", to=" + to + " are out of bounds: [0, " + children.size() + "]");
+        }
+        if (from == to) {
+            return 0;
+        }
+        List<INode> range = children.subList(from, to);
+        List<INode> deleted = new ArrayList<>(range);
+        range.clear();
+        int count = 0;
+        for (int i = 0, size = deleted.size(); i < size; i++) {
+            INode child = deleted.get(i);
+            child.setParent(null);
+            if (!(child instanceof Node)) {
+                child.removeObserver(this);
+            }
+            count += countVisible(child);
+        }
+        invalidateSubtreeHash();
+        List<INode> view = Collections.unmodifiableList(deleted);
+        ExpandableList owner = directOwner();
+        if (owner != null) {
+            owner.onDeletedAll(this, view);
+        } else {
+            onDeletedAll(this, view);
+        }
+        return count;
+    }
+
+    /**
+     * Delete all children at once.
+     *
+     * @see #deleteRange(int, int)
+     */
     @Override
     public void clear() {
-        for (int i = children.size() - 1; i >= 0; i--) {
-            delete(children.get(i));
+        deleteRange(0, children.size());
+    }
+
+    /**
+     * Reorder children according to {@code comparator}.
+     * <br>
+     * Children which are already in the right order are kept in place, others are moved one by one,
+     * each move is reported via {@link Observer#onMoved(INode, int, int)}.
+     *
+     * @param comparator comparator
+     */
+    public void sortChildren(Comparator<? super INode> comparator) {
+        int size = children.size();
+        if (size < 2) {
+            return;
         }
+        List<INode> sorted = new ArrayList<>(children);
+        Collections.sort(sorted, comparator);
+        Map<INode, Integer> indices = new IdentityHashMap<>(size);
+        for (int i = 0; i < size; i++) {
+            indices.put(children.get(i), i);
+        }
+        int[] slots = new int[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = indices.get(sorted.get(i)) + 1;
+        }
+        boolean[] keep = longestOrderedSubsequence(slots);
+        // slot s + 1 holds the child initially at s followed by children moved right after it, slot 0 holds
+        // children moved to the start, so positions are counted without looking the children up
+        PrefixSums counts = new PrefixSums(size + 1);
+        for (int slot = 1; slot <= size; slot++) {
+            counts.add(slot, 1);
+        }
+        int anchor = 0;
+        for (int i = 0; i < size; i++) {
+            int slot = slots[i];
+            if (keep[i]) {
+                anchor = slot;
+                continue;
+            }
+            // put the node right after its predecessor in the sorted order, which ends the anchor slot
+            INode child = sorted.get(i);
+            int from = counts.sumBefore(slot);
+            counts.add(slot, -1);
+            int to = counts.sumBefore(anchor + 1);
+            counts.add(anchor, 1);
+            if (from != to) {
+                children.add(to, children.remove(from));
+                invalidateSubtreeHash();
+                dispatchMoved(child, from, to);
+            }
+        }
+    }
+
+    /**
+     * Get hash of the subtree of this node, which combines {@link #contentHash() content hash} of the node and
+     * hashes of its children. Hash is cached until the subtree is changed, so subtrees can be compared, deduplicated
+     * or used as cache keys without walking unchanged parts.
+     * <br>
+     * Expansion state is not included in the hash.
+     * <br>
+     * Must be called on the thread which modifies the tree: the cache is not synchronized.
+     *
+     * @return hash of the subtree
+     */
+    public long getSubtreeHash() {
+        if (!subtreeHashValid) {
+            // walker is not shared with the list, which can be walking the tree at the moment
+            new TreeWalker().walk(this, new SubtreeHasher());
+        }
+        return subtreeHash;
+    }
+
+    /**
+     * Must be called, when the data of the node, used for {@link #contentHash()}, is changed.
+     */
+    public void notifyContentChanged() {
+        invalidateSubtreeHash();
     }
 
     /**
@@ -84,6 +367,20 @@ public class Node implements INode, INode.Observer, Iterable<INode> {
         return expanded;
     }
 
+    @Override
+    public long getId() {
+        return id;
+    }
+
+    @Override
+    public int getViewType() {
+        int viewType = this.viewType;
+        if (viewType < 0) {
+            viewType = this.viewType = ViewTypes.of(getClass());
+        }
+        return viewType;
+    }
+
     @Override
     public void setParent(INode parent) {
         this.parent = parent;
@@ -94,21 +391,62 @@ public class Node implements INode, INode.Observer, Iterable<INode> {
         return parent;
     }
 
+    /**
+     * @return read-only view of children, which reflects later changes
+     */
     @Override
     public List<? extends INode> getChildren() {
-        return Collections.unmodifiableList(children);
+        if (childrenView == null) {
+            childrenView = Collections.unmodifiableList(children);
+        }
+        return childrenView;
     }
 
     @Override
     public void addObserver(Observer observer) {
-        if (observers.indexOf(observer) == -1) {
-            observers.add(observers.size(), observer);
+        if (this.observer == observer || indexOfObserver(observer) != -1) {
+            return;
+        }
+        observersChanging();
+        if (this.observer == null) {
+            this.observer = observer;
+        } else {
+            if (observers == null) {
+                observers = new ArrayList<>(1);
+            }
+            observers.add(observer);
+        }
+    }
+
+    /**
+     * Add an observer, which is referenced weakly, so it can be garbage collected while this node is alive,
+     * e.g. an adapter of the destroyed screen.
+     *
+     * @param observer observer
+     */
+    public void addWeakObserver(Observer observer) {
+        if (this.observer == observer || indexOfObserver(observer) != -1) {
+            return;
+        }
+        observersChanging();
+        if (observers == null) {
+            observers = new ArrayList<>(1);
         }
+        observers.add(new WeakObserver(this, observer));
     }
 
     @Override
     public void removeObserver(Observer observer) {
-        observers.remove(observer);
+        if (this.observer == observer) {
+            this.observer = null;
+            observersChanged();
+            return;
+        }
+        int index = indexOfObserver(observer);
+        if (index != -1) {
+            observers.remove(index);
+            observersChanged();
+        }
     }
 
     @Override
@@ -116,25 +454,216 @@ public class Node implements INode, INode.Observer, Iterable<INode> {
         return children.iterator();
     }
 
+    /**
+     * Spliterator over this node and all of its descendants (including collapsed ones) in depth-first order,
+     * which can be split for parallel processing, e.g.
+     * {@code StreamSupport.stream(node.subtreeSpliterator(), true)}.
+     * <br>
+     * Subtree must not be modified during the traversal.
+     *
+     * @return spliterator over the subtree
+     */
+    @RequiresApi(24)
+    public Spliterator<INode> subtreeSpliterator() {
+        return new SubtreeSpliterator(this, children, SubtreeSpliterator.absoluteSize(this));
+    }
+
     ///////////////////////////////////////////////////////////////////////////
     // Internal
     ///////////////////////////////////////////////////////////////////////////
 
+    /**
+     * Hash of the node data, excluding children.
+     *
+     * @return hash of the node data
+     * @see #getSubtreeHash()
+     */
+    protected long contentHash() {
+        return 0;
+    }
+
+    /**
+     * Invalidate cached hashes, if {@code parent} is not a {@link Node}: changes of other implementations
+     * are only seen through their events.
+     *
+     * @param parent parent of the changed node
+     */
+    private void invalidateSubtreeHash(INode parent) {
+        if (!(parent instanceof Node)) {
+            invalidateSubtreeHash();
+        }
+    }
+
+    /**
+     * Invalidate cached hashes of this node and its ancestors.
+     */
+    protected void invalidateSubtreeHash() {
+        Node node = this;
+        while (node.subtreeHashValid) {
+            node.subtreeHashValid = false;
+            if (!(node.parent instanceof Node)) {
+                break;
+            }
+            node = (Node) node.parent;
+        }
+    }
+
+    /**
+     * @return {@code true}, if this node has observers (except its parent)
+     */
+    boolean hasObservers() {
+        return observer != null || (observers != null && !observers.isEmpty());
+    }
+
+    /**
+     * Must be called before an observer is added.
+     */
+    private void observersChanging() {
+        if (owner != null && !hasObservers()) {
+            owner.onObservedMembersChanged(1);
+        }
+    }
+
+    /**
+     * Must be called after an observer is removed.
+     */
+    private void observersChanged() {
+        if (owner != null && !hasObservers()) {
+            owner.onObservedMembersChanged(-1);
+        }
+    }
+
+    /**
+     * Get the list, which can be notified about changes of this node directly, without notifying the ancestors.
+     * It is possible, when no ancestor between this node and the list is observed, so events have nobody else
+     * to reach. To keep the check {@code O(1)}, list only tracks if any of its members is observed.
+     *
+     * @return owner list, or {@code null}, if events must be propagated through the ancestors
+     */
+    ExpandableList directOwner() {
+        ExpandableList owner = this.owner;
+        return owner != null && !owner.hasObservedMembers() ? owner : null;
+    }
+
+    /**
+     * @return list, this node is a member of (or is), or {@code null}
+     */
+    private ExpandableList list() {
+        return this instanceof ExpandableList ? (ExpandableList) this : owner;
+    }
+
+    /**
+     * Notify observers, that {@code child} was moved.
+     *
+     * @param child     moved child
+     * @param fromIndex previous index of the child
+     * @param toIndex   new index of the child
+     */
+    protected void dispatchMoved(INode child, int fromIndex, int toIndex) {
+        ExpandableList owner = directOwner();
+        if (owner != null) {
+            owner.onMoved(child, fromIndex, toIndex);
+        } else {
+            onMoved(child, fromIndex, toIndex);
+        }
+    }
+
+    /**
+     * Notify observers, that {@code child} was moved from {@code oldParent}, which has this node
+     * as a common ancestor with the new parent of the {@code child}.
+     *
+     * @param oldParent old parent
+     * @param child     moved child
+     */
+    void dispatchReparented(INode oldParent, INode child) {
+        ExpandableList owner = directOwner();
+        if (owner != null) {
+            owner.onReparented(oldParent, child);
+        } else {
+            onReparented(oldParent, child);
+        }
+    }
+
+    /**
+     * While {@code child} is moved by its list, observers of this node and its ancestors receive a single
+     * {@link Observer#onReparented(INode, INode)} instead of the deletion and the insertion.
+     *
+     * @param child inserted or deleted child
+     * @return {@code true}, if the event must not be propagated further
+     */
+    private boolean isMoveBoundary(INode child) {
+        ExpandableList list = list();
+        return list != null && list.isMoveBoundary(child, this);
+    }
+
+    /**
+     * Observers are compared by identity, because some of them are lists, which are equal if their contents are.
+     *
+     * @param observer observer
+     * @return index of the {@code observer}, or {@code -1}
+     */
+    private int indexOfObserver(Observer observer) {
+        if (observers == null) {
+            return -1;
+        }
+        for (int i = 0, size = observers.size(); i < size; i++) {
+            Observer o = observers.get(i);
+            if (o == observer || (o instanceof WeakObserver && ((WeakObserver) o).get() == observer)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     /**
      * Count visible child nodes of a given {@code node}.
      *
      * @param node node
      * @return number of nodes, respecting {@link INode#isExpanded() expanded} state
      */
-    private int countVisible(INode node) {
-        int count = 1;
-        if (!node.isExpanded()) {
-            return count;
+    protected int countVisible(INode node) {
+        if (!node.isExpanded() || node.getChildren().isEmpty()) {
+            return 1;
         }
-        for (INode child : node.getChildren()) {
-            count += countVisible(child);
+        ExpandableList list = list();
+        // nodes outside of lists are rarely changed, so they do not keep a walker
+        return (list != null ? list.walker() : new TreeWalker()).count(node, true);
+    }
+
+    /**
+     * Find nodes of the sorted order, which are already in the right order in {@link #children}.
+     *
+     * @param indices indices of nodes in {@link #children}, in the sorted order
+     * @return flags for nodes of the sorted order, which can be kept in place
+     */
+    private static boolean[] longestOrderedSubsequence(int[] indices) {
+        int size = indices.length;
+        // tails[k] - index in the sorted order of the smallest tail of subsequences of length k + 1
+        int[] tails = new int[size];
+        int[] previous = new int[size];
+        int length = 0;
+        for (int i = 0; i < size; i++) {
+            int index = indices[i];
+            int lo = 0, hi = length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (indices[tails[mid]] < index) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            previous[i] = lo > 0 ? tails[lo - 1] : -1;
+            tails[lo] = i;
+            if (lo == length) {
+                length++;
+            }
         }
-        return count;
+        boolean[] keep = new boolean[size];
+        for (int i = length > 0 ? tails[length - 1] : -1; i >= 0; i = previous[i]) {
+            keep[i] = true;
+        }
+        return keep;
     }
 
     ///////////////////////////////////////////////////////////////////////////
@@ -143,22 +672,254 @@ public class Node implements INode, INode.Observer, Iterable<INode> {
 
     @Override
     public void onInserted(INode child) {
-        for (int i = observers.size() - 1; i >= 0; i--) {
-            observers.get(i).onInserted(child);
+        invalidateSubtreeHash(child.getParent());
+        if (isMoveBoundary(child)) {
+            return;
+        }
+        if (observers != null) {
+            for (int i = observers.size() - 1; i >= 0; i--) {
+                observers.get(i).onInserted(child);
+            }
+        }
+        if (observer != null) {
+            observer.onInserted(child);
+        }
+        if (parent instanceof Node) {
+            ((Node) parent).onInserted(child);
+        }
+    }
+
+    @Override
+    public void onInsertedAll(List<? extends INode> children) {
+        invalidateSubtreeHash(children.get(0).getParent());
+        if (observers != null) {
+            for (int i = observers.size() - 1; i >= 0; i--) {
+                observers.get(i).onInsertedAll(children);
+            }
+        }
+        if (observer != null) {
+            observer.onInsertedAll(children);
+        }
+        if (parent instanceof Node) {
+            ((Node) parent).onInsertedAll(children);
+        }
+    }
+
+    @Override
+    public void onDeletedAll(INode fromParent, List<? extends INode> children) {
+        invalidateSubtreeHash(fromParent);
+        if (observers != null) {
+            for (int i = observers.size() - 1; i >= 0; i--) {
+                observers.get(i).onDeletedAll(fromParent, children);
+            }
+        }
+        if (observer != null) {
+            observer.onDeletedAll(fromParent, children);
+        }
+        if (parent instanceof Node) {
+            ((Node) parent).onDeletedAll(fromParent, children);
         }
     }
 
     @Override
     public void onChanged(INode node) {
-        for (int i = observers.size() - 1; i >= 0; i--) {
-            observers.get(i).onChanged(node);
+        if (observers != null) {
+            for (int i = observers.size() - 1; i >= 0; i--) {
+                observers.get(i).onChanged(node);
+            }
+        }
+        if (observer != null) {
+            observer.onChanged(node);
+        }
+        if (parent instanceof Node) {
+            ((Node) parent).onChanged(node);
         }
     }
 
     @Override
     public void onDeleted(INode fromParent, INode child) {
-        for (int i = observers.size() - 1; i >= 0; i--) {
-            observers.get(i).onDeleted(fromParent, child);
+        invalidateSubtreeHash(fromParent);
+        if (isMoveBoundary(child)) {
+            return;
+        }
+        if (observers != null) {
+            for (int i = observers.size() - 1; i >= 0; i--) {
+                observers.get(i).onDeleted(fromParent, child);
+            }
+        }
+        if (observer != null) {
+            observer.onDeleted(fromParent, child);
+        }
+        if (parent instanceof Node) {
+            ((Node) parent).onDeleted(fromParent, child);
+        }
+    }
+
+    @Override
+    public void onMoved(INode child, int fromIndex, int toIndex) {
+        invalidateSubtreeHash(child.getParent());
+        if (observers != null) {
+            for (int i = observers.size() - 1; i >= 0; i--) {
+                observers.get(i).onMoved(child, fromIndex, toIndex);
+            }
+        }
+        if (observer != null) {
+            observer.onMoved(child, fromIndex, toIndex);
+        }
+        if (parent instanceof Node) {
+            ((Node) parent).onMoved(child, fromIndex, toIndex);
+        }
+    }
+
+    @Override
+    public void onReparented(INode oldParent, INode child) {
+        if (observers != null) {
+            for (int i = observers.size() - 1; i >= 0; i--) {
+                observers.get(i).onReparented(oldParent, child);
+            }
+        }
+        if (observer != null) {
+            observer.onReparented(oldParent, child);
+        }
+        if (parent instanceof Node) {
+            ((Node) parent).onReparented(oldParent, child);
+        }
+    }
+
+    private void removeWeakObserver(WeakObserver observer) {
+        if (observers.remove(observer)) {
+            observersChanged();
+        }
+    }
+
+    /**
+     * Computes hashes of subtrees in postorder, reusing valid cached hashes. Other {@link INode} implementations
+     * are hashed by their {@link INode#getId() ids}, view types and children.
+     */
+    private static class SubtreeHasher implements TreeWalker.Visitor {
+        /**
+         * Partial hashes of the nodes being visited, by depth.
+         */
+        private long[] hashes = new long[16];
+
+        @Override
+        public TreeWalker.Action enter(INode node, int depth) {
+            if (hashes.length == depth) {
+                long[] newHashes = new long[depth * 2];
+                System.arraycopy(hashes, 0, newHashes, 0, depth);
+                hashes = newHashes;
+            }
+            if (node instanceof Node) {
+                Node n = (Node) node;
+                if (n.subtreeHashValid) {
+                    hashes[depth] = n.subtreeHash;
+                    return TreeWalker.Action.SKIP_CHILDREN;
+                }
+                hashes[depth] = n.contentHash();
+            } else {
+                hashes[depth] = node.getId() * 31 + node.getViewType();
+            }
+            return TreeWalker.Action.CONTINUE;
+        }
+
+        @Override
+        public void leave(INode node, int depth) {
+            long hash;
+            if (node instanceof Node && ((Node) node).subtreeHashValid) {
+                hash = ((Node) node).subtreeHash;
+            } else {
+                hash = Hashing.mix(hashes[depth] + node.getChildren().size());
+                if (node instanceof Node) {
+                    ((Node) node).subtreeHash = hash;
+                    ((Node) node).subtreeHashValid = true;
+                }
+            }
+            if (depth > 0) {
+                hashes[depth - 1] = hashes[depth - 1] * 1_000_003 + hash;
+            }
+        }
+    }
+
+    /**
+     * Observer, which forwards events to a weakly referenced observer and unregisters itself,
+     * when it is garbage collected.
+     */
+    private static class WeakObserver extends WeakReference<Observer> implements Observer {
+        private final Node node;
+
+        WeakObserver(Node node, Observer observer) {
+            super(observer);
+            this.node = node;
+        }
+
+        @Override
+        public void onInserted(INode child) {
+            Observer observer = get();
+            if (observer != null) {
+                observer.onInserted(child);
+            } else {
+                node.removeWeakObserver(this);
+            }
+        }
+
+        @Override
+        public void onInsertedAll(List<? extends INode> children) {
+            Observer observer = get();
+            if (observer != null) {
+                observer.onInsertedAll(children);
+            } else {
+                node.removeWeakObserver(this);
+            }
+        }
+
+        @Override
+        public void onDeletedAll(INode oldParent, List<? extends INode> children) {
+            Observer observer = get();
+            if (observer != null) {
+                observer.onDeletedAll(oldParent, children);
+            } else {
+                node.removeWeakObserver(this);
+            }
+        }
+
+        @Override
+        public void onChanged(INode node) {
+            Observer observer = get();
+            if (observer != null) {
+                observer.onChanged(node);
+            } else {
+                this.node.removeWeakObserver(this);
+            }
+        }
+
+        @Override
+        public void onDeleted(INode oldParent, INode child) {
+            Observer observer = get();
+            if (observer != null) {
+                observer.onDeleted(oldParent, child);
+            } else {
+                node.removeWeakObserver(this);
+            }
+        }
+
+        @Override
+        public void onMoved(INode child, int fromIndex, int toIndex) {
+            Observer observer = get();
+            if (observer != null) {
+                observer.onMoved(child, fromIndex, toIndex);
+            } else {
+                node.removeWeakObserver(this);
+            }
+        }
+
+        @Override
+        public void onReparented(INode oldParent, INode child) {
+            Observer observer = get();
+            if (observer != null) {
+                observer.onReparented(oldParent, child);
+            } else {
+                node.removeWeakObserver(this);
+            }
         }
     }
 }
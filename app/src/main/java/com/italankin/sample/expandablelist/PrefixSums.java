@@ -0,0 +1,39 @@
+package com.italankin.sample.expandablelist;
+
+/**
+ * Prefix sums of an array of values, which can be changed (Fenwick tree). Both operations take {@code O(log n)},
+ * so positions of moved items can be tracked without recounting items before them.
+ */
+final class PrefixSums {
+
+    private final int[] tree;
+
+    /**
+     * @param size count of values, all values are {@code 0}
+     */
+    PrefixSums(int size) {
+        this.tree = new int[size + 1];
+    }
+
+    /**
+     * @param index index of the value
+     * @param delta value to add
+     */
+    void add(int index, int delta) {
+        for (int i = index + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    /**
+     * @param index index of the value
+     * @return sum of values before {@code index}
+     */
+    int sumBefore(int index) {
+        int sum = 0;
+        for (int i = index; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,210 @@
+package com.italankin.sample.expandablelist;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Case-insensitive substring index over the text of nodes.
+ * <br>
+ * Every substring up to {@code gramLength} characters is indexed, so short queries are answered
+ * directly from the index, while longer queries are answered by verifying candidates of the rarest gram.
+ * Index is updated automatically, when nodes are inserted to or deleted from the indexed tree.
+ * Changes of the node text must be reported via {@link #update(INode)}.
+ */
+public class SearchIndex implements INode.Observer {
+
+    private static final int DEFAULT_GRAM_LENGTH = 3;
+
+    private final INode root;
+    private final TextExtractor extractor;
+    private final int gramLength;
+
+    /**
+     * Nodes containing the gram.
+     */
+    private final Map<String, Set<INode>> postings = new HashMap<>();
+
+    /**
+     * Normalized text of indexed nodes.
+     */
+    private final Map<INode, String> texts = new IdentityHashMap<>();
+
+    private final TreeWalker walker = new TreeWalker();
+
+    private final TreeWalker.Visitor indexer = (node, depth) -> {
+        index(node);
+        return TreeWalker.Action.CONTINUE;
+    };
+
+    private final TreeWalker.Visitor unindexer = (node, depth) -> {
+        unindex(node);
+        return TreeWalker.Action.CONTINUE;
+    };
+
+    public SearchIndex(INode root, TextExtractor extractor) {
+        this(root, extractor, DEFAULT_GRAM_LENGTH);
+    }
+
+    /**
+     * @param root       root of the indexed tree, root itself is not indexed
+     * @param extractor  provider of the node text
+     * @param gramLength max length of indexed substrings
+     */
+    public SearchIndex(INode root, TextExtractor extractor, int gramLength) {
+        if (gramLength < 1) {
+            throw new IllegalArgumentException("gramLength=" + gramLength + " must be positive");
+        }
+        this.root = root;
+        this.extractor = extractor;
+        this.gramLength = gramLength;
+        walker.walkChildren(root, indexer);
+        root.addObserver(this);
+    }
+
+    /**
+     * Find nodes, which text contains {@code query}.
+     *
+     * @param query query
+     * @return matching nodes in no particular order
+     */
+    public List<INode> find(String query) {
+        String q = normalize(query);
+        if (q.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (q.length() <= gramLength) {
+            Set<INode> nodes = postings.get(q);
+            return nodes != null ? new ArrayList<>(nodes) : Collections.<INode>emptyList();
+        }
+        // find the rarest gram of the query
+        Set<INode> candidates = null;
+        for (int i = 0; i + gramLength <= q.length(); i++) {
+            Set<INode> nodes = postings.get(q.substring(i, i + gramLength));
+            if (nodes == null) {
+                return Collections.emptyList();
+            }
+            if (candidates == null || nodes.size() < candidates.size()) {
+                candidates = nodes;
+            }
+        }
+        List<INode> result = new ArrayList<>();
+        for (INode node : candidates) {
+            if (texts.get(node).contains(q)) {
+                result.add(node);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Index {@code node} again, after its text is changed.
+     *
+     * @param node changed node
+     */
+    public void update(INode node) {
+        unindex(node);
+        index(node);
+    }
+
+    /**
+     * @return count of indexed nodes
+     */
+    public int size() {
+        return texts.size();
+    }
+
+    /**
+     * Stop tracking changes of the tree.
+     */
+    public void release() {
+        root.removeObserver(this);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // Observer
+    ///////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void onInserted(INode child) {
+        add(child);
+    }
+
+    @Override
+    public void onChanged(INode node) {
+        // expansion state is not indexed
+    }
+
+    @Override
+    public void onDeleted(INode oldParent, INode child) {
+        remove(child);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // Internal
+    ///////////////////////////////////////////////////////////////////////////
+
+    private void add(INode node) {
+        walker.walk(node, indexer);
+    }
+
+    private void remove(INode node) {
+        walker.walk(node, unindexer);
+    }
+
+    private void index(INode node) {
+        String text = extractor.getText(node);
+        if (text == null) {
+            return;
+        }
+        text = normalize(text);
+        texts.put(node, text);
+        for (int i = 0, length = text.length(); i < length; i++) {
+            for (int end = i + 1, max = Math.min(length, i + gramLength); end <= max; end++) {
+                String gram = text.substring(i, end);
+                Set<INode> nodes = postings.get(gram);
+                if (nodes == null) {
+                    nodes = Collections.newSetFromMap(new IdentityHashMap<INode, Boolean>());
+                    postings.put(gram, nodes);
+                }
+                nodes.add(node);
+            }
+        }
+    }
+
+    private void unindex(INode node) {
+        String text = texts.remove(node);
+        if (text == null) {
+            return;
+        }
+        for (int i = 0, length = text.length(); i < length; i++) {
+            for (int end = i + 1, max = Math.min(length, i + gramLength); end <= max; end++) {
+                String gram = text.substring(i, end);
+                Set<INode> nodes = postings.get(gram);
+                if (nodes != null && nodes.remove(node) && nodes.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        }
+    }
+
+    private static String normalize(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Provides text of nodes for indexing.
+     */
+    public interface TextExtractor {
+        /**
+         * @param node node
+         * @return text of the {@code node}, or {@code null}, if node should not be indexed
+         */
+        String getText(INode node);
+    }
+}
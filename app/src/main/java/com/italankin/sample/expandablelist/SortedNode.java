@@ -0,0 +1,128 @@
+package com.italankin.sample.expandablelist;
+
+import java.util.Collection;
+import java.util.Comparator;
+
+/**
+ * Node, which keeps its children sorted by a {@link Comparator}.
+ * <br>
+ * If the sort key of a child is changed, {@link #reposition(INode)} must be called.
+ */
+public class SortedNode extends Node {
+
+    private Comparator<? super INode> comparator;
+
+    public SortedNode(Comparator<? super INode> comparator) {
+        this.comparator = comparator;
+    }
+
+    /**
+     * Insert {@code child} at the index defined by the comparator. Children considered equal keep
+     * the order of insertion.
+     *
+     * @param child child node
+     * @return count of inserted visible nodes
+     */
+    @Override
+    public int insert(INode child) {
+        return super.insert(insertionIndex(child), child);
+    }
+
+    /**
+     * @deprecated Unsupported, index is defined by the comparator. Use {@link #insert(INode)}.
+     */
+    @Deprecated
+    @Override
+    public int insert(int index, INode child) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Insert {@code children} one by one at the indices defined by the comparator, so they are reported
+     * separately, unlike {@link Node#insertAll(int, Collection)}.
+     *
+     * @param children children
+     * @return count of inserted visible nodes
+     */
+    @Override
+    public int insertAll(Collection<? extends INode> children) {
+        int count = 0;
+        for (INode child : children) {
+            count += insert(child);
+        }
+        return count;
+    }
+
+    /**
+     * @deprecated Unsupported, index is defined by the comparator. Use {@link #insertAll(Collection)}.
+     */
+    @Deprecated
+    @Override
+    public int insertAll(int index, Collection<? extends INode> children) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Move {@code child} to the right index after its sort key was changed. The child is not moved if it is
+     * still ordered against its neighbours.
+     *
+     * @param child child node
+     * @return new index of the {@code child}
+     */
+    public int reposition(INode child) {
+        if (child.getParent() != this) {
+            throw new IllegalStateException(child + " is not a member of this node");
+        }
+        int from = children.indexOf(child);
+        int last = children.size() - 1;
+        if ((from == 0 || comparator.compare(children.get(from - 1), child) <= 0)
+                && (from == last || comparator.compare(child, children.get(from + 1)) <= 0)) {
+            return from;
+        }
+        // index is computed before the child is removed, so the comparator cannot leave it detached
+        int to = insertionIndex(child, from);
+        children.remove(from);
+        children.add(to, child);
+        if (from != to) {
+            invalidateSubtreeHash();
+            dispatchMoved(child, from, to);
+        }
+        return to;
+    }
+
+    /**
+     * Set new comparator and reorder children.
+     *
+     * @param comparator comparator
+     */
+    public void setComparator(Comparator<? super INode> comparator) {
+        this.comparator = comparator;
+        sortChildren(comparator);
+    }
+
+    public Comparator<? super INode> getComparator() {
+        return comparator;
+    }
+
+    private int insertionIndex(INode child) {
+        return insertionIndex(child, children.size());
+    }
+
+    /**
+     * @param child child node
+     * @param skip  index of a child to ignore, as if it was removed
+     * @return index of the {@code child} in children without the one at {@code skip}
+     */
+    private int insertionIndex(INode child, int skip) {
+        int lo = 0, hi = skip < children.size() ? children.size() - 1 : children.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (comparator.compare(children.get(mid < skip ? mid : mid + 1), child) <= 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
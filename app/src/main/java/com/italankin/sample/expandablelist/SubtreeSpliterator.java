@@ -0,0 +1,117 @@
+package com.italankin.sample.expandablelist;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import androidx.annotation.RequiresApi;
+
+/**
+ * Splittable {@link Spliterator} over all nodes of subtrees (including collapsed ones) in depth-first order.
+ * <br>
+ * Splitting divides the range of subtrees which are not started yet; a single subtree is split
+ * into its children.
+ */
+@RequiresApi(24)
+final class SubtreeSpliterator implements Spliterator<INode> {
+
+    /**
+     * Node reported before subtrees of {@link #nodes} (which are its children), can be {@code null}.
+     */
+    private INode head;
+    private List<? extends INode> nodes;
+    private int index;
+    private int fence;
+    /**
+     * Pending nodes of the started subtree, the next one is the last.
+     */
+    private final List<INode> stack = new ArrayList<>();
+    private long estimate;
+
+    /**
+     * @param head     node reported first, without its subtree, can be {@code null}
+     * @param nodes    roots of subtrees, reported after the {@code head}
+     * @param estimate estimated count of reported nodes
+     */
+    SubtreeSpliterator(INode head, List<? extends INode> nodes, long estimate) {
+        this(head, nodes, 0, nodes.size(), estimate);
+    }
+
+    private SubtreeSpliterator(INode head, List<? extends INode> nodes, int index, int fence, long estimate) {
+        this.head = head;
+        this.nodes = nodes;
+        this.index = index;
+        this.fence = fence;
+        this.estimate = estimate;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super INode> action) {
+        if (head != null) {
+            // children of the head are the nodes
+            action.accept(head);
+            head = null;
+            return true;
+        }
+        INode node;
+        if (!stack.isEmpty()) {
+            node = stack.remove(stack.size() - 1);
+        } else if (index < fence) {
+            node = nodes.get(index++);
+        } else {
+            return false;
+        }
+        List<? extends INode> children = node.getChildren();
+        for (int i = children.size() - 1; i >= 0; i--) {
+            stack.add(children.get(i));
+        }
+        action.accept(node);
+        return true;
+    }
+
+    @Override
+    public Spliterator<INode> trySplit() {
+        if (!stack.isEmpty()) {
+            // the started subtree must be reported before any of the remaining ones
+            return null;
+        }
+        int size = fence - index;
+        if (size == 1 && head == null) {
+            // descend into the only subtree
+            INode node = nodes.get(index);
+            head = node;
+            nodes = node.getChildren();
+            index = 0;
+            fence = nodes.size();
+            size = fence;
+        }
+        if (size == 0) {
+            return null;
+        }
+        int mid = index + (size >>> 1);
+        estimate >>>= 1;
+        SubtreeSpliterator prefix = new SubtreeSpliterator(head, nodes, index, mid, estimate);
+        head = null;
+        index = mid;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return estimate;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | DISTINCT | NONNULL;
+    }
+
+    /**
+     * @param node node
+     * @return count of nodes in the subtree of {@code node}, including collapsed ones
+     */
+    static long absoluteSize(INode node) {
+        return new TreeWalker().count(node, false);
+    }
+}
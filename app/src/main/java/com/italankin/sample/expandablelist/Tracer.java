@@ -0,0 +1,23 @@
+package com.italankin.sample.expandablelist;
+
+/**
+ * Receives sections of work, e.g. to show them in systrace.
+ * <br>
+ * Sections are nested: {@link #endSection()} ends the most recently started section on the same thread.
+ *
+ * @see Tracing#setTracer(Tracer)
+ */
+public interface Tracer {
+
+    /**
+     * Begin section of work.
+     *
+     * @param name name of the section
+     */
+    void beginSection(String name);
+
+    /**
+     * End the most recently started section.
+     */
+    void endSection();
+}
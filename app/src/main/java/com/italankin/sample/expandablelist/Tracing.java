@@ -0,0 +1,58 @@
+package com.italankin.sample.expandablelist;
+
+/**
+ * Global {@link Tracer} for the sections of list operations. Without a tracer sections are not recorded.
+ */
+public final class Tracing {
+
+    /**
+     * Full recalculation of the list.
+     */
+    public static final String FLATTEN = "ExpandableList.flatten";
+    /**
+     * Incremental update of the list after a change of the tree.
+     */
+    public static final String SPLICE = "ExpandableList.splice";
+    /**
+     * Dispatch of tree events to the observers of the list.
+     */
+    public static final String OBSERVERS = "ExpandableList.observers";
+    /**
+     * Dispatch of queued updates by {@link UpdateDispatcher}.
+     */
+    public static final String FLUSH = "UpdateDispatcher.flush";
+
+    private static volatile Tracer tracer;
+
+    private Tracing() {
+    }
+
+    /**
+     * @param tracer tracer, can be {@code null}
+     */
+    public static void setTracer(Tracer tracer) {
+        Tracing.tracer = tracer;
+    }
+
+    /**
+     * Begin section, if there is a tracer.
+     *
+     * @param name name of the section
+     */
+    public static void begin(String name) {
+        Tracer tracer = Tracing.tracer;
+        if (tracer != null) {
+            tracer.beginSection(name);
+        }
+    }
+
+    /**
+     * End the most recently started section, if there is a tracer.
+     */
+    public static void end() {
+        Tracer tracer = Tracing.tracer;
+        if (tracer != null) {
+            tracer.endSection();
+        }
+    }
+}
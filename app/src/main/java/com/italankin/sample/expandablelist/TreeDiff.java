@@ -0,0 +1,475 @@
+package com.italankin.sample.expandablelist;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Calculates positional updates, which transform the visible list of one tree into the visible list of another.
+ * <br>
+ * Nodes are matched by keys among children of matched parents, so the diff works level by level and
+ * subtrees with equal hashes (of keys, contents and expansion state) are skipped entirely. If the callback is
+ * {@link Callback#isSubtreeHashCompatible() compatible} with {@link Node#getSubtreeHash()}, cached hashes of
+ * {@link Node}s are compared instead, and subtrees with equal hashes are only checked for changes of expansion state.
+ * Matching keys and sizes of subtrees are verified as well, so a collision of hashes does not hide changes of
+ * the structure.
+ * <br>
+ * Calculation does not modify the trees, but it must run on the thread which modifies them (usually the UI
+ * thread): {@link Node} caches subtree hashes lazily and without synchronization.
+ * <br>
+ * Hashing and counting of subtrees is iterative, but matching recurses into children of matched pairs,
+ * so the call stack grows with the depth of the trees.
+ */
+public class TreeDiff {
+
+    private static final int INSERTED = 1;
+    private static final int REMOVED = 2;
+    private static final int MOVED = 3;
+    private static final int CHANGED = 4;
+    private static final int EXPANSION_CHANGED = 5;
+
+    /**
+     * Calculate the difference between visible lists of {@code oldRoot} and {@code newRoot}.
+     * Roots themselves are not a part of the lists, their children are always visible.
+     *
+     * @param oldRoot  old root
+     * @param newRoot  new root
+     * @param callback provider of keys and contents of nodes
+     * @return result, which can be dispatched to a {@link ListUpdateCallback}
+     */
+    public static Result calculate(INode oldRoot, INode newRoot, Callback callback) {
+        TreeDiff diff = new TreeDiff(callback);
+        diff.diffChildren(oldRoot, newRoot, 0);
+        return diff.result;
+    }
+
+    private final Callback callback;
+    private final boolean subtreeHashes;
+    private final Map<INode, Long> hashes = new IdentityHashMap<>();
+    private final Result result = new Result();
+    private final TreeWalker walker = new TreeWalker();
+
+    /**
+     * Partial hashes of the nodes being {@link #hash(INode) hashed}, by depth.
+     */
+    private long[] partialHashes = new long[16];
+    private final TreeWalker.Visitor hasher = new TreeWalker.Visitor() {
+        @Override
+        public TreeWalker.Action enter(INode node, int depth) {
+            if (partialHashes.length == depth) {
+                partialHashes = Arrays.copyOf(partialHashes, depth * 2);
+            }
+            Long cached = hashes.get(node);
+            if (cached != null) {
+                partialHashes[depth] = cached;
+                return TreeWalker.Action.SKIP_CHILDREN;
+            }
+            long hash = callback.getContentHash(node);
+            Object key = callback.getKey(node);
+            hash = hash * 31 + (key != null ? key.hashCode() : 0);
+            hash = hash * 31 + (node.isExpanded() ? 1 : 0);
+            partialHashes[depth] = hash;
+            return TreeWalker.Action.CONTINUE;
+        }
+
+        @Override
+        public void leave(INode node, int depth) {
+            long hash = partialHashes[depth];
+            if (!hashes.containsKey(node)) {
+                hash = Hashing.mix(hash);
+                hashes.put(node, hash);
+                partialHashes[depth] = hash;
+            }
+            if (depth > 0) {
+                partialHashes[depth - 1] = partialHashes[depth - 1] * 1_000_003 + hash;
+            }
+        }
+    };
+
+    private TreeDiff(Callback callback) {
+        this.callback = callback;
+        this.subtreeHashes = callback.isSubtreeHashCompatible();
+    }
+
+    /**
+     * Record updates for children of matched parents.
+     *
+     * @param oldParent old parent
+     * @param newParent new parent
+     * @param start     position of the first child
+     * @return count of visible nodes of the new children
+     */
+    private int diffChildren(INode oldParent, INode newParent, int start) {
+        List<? extends INode> oldChildren = oldParent.getChildren();
+        List<? extends INode> newChildren = newParent.getChildren();
+        Map<Object, Integer> oldIndices = new HashMap<>(oldChildren.size() * 2);
+        for (int i = oldChildren.size() - 1; i >= 0; i--) {
+            oldIndices.put(callback.getKey(oldChildren.get(i)), i);
+        }
+        // match children by keys
+        Entry[] entries = new Entry[oldChildren.size()];
+        List<Entry> targets = new ArrayList<>(newChildren.size());
+        for (INode newChild : newChildren) {
+            Integer index = oldIndices.get(callback.getKey(newChild));
+            if (index != null && entries[index] == null) {
+                Entry entry = new Entry(oldChildren.get(index), newChild);
+                entries[index] = entry;
+                targets.add(entry);
+            } else {
+                targets.add(null);
+            }
+        }
+
+        // remove unmatched old children
+        int matchedCount = 0;
+        int position = start;
+        for (int i = 0; i < entries.length; i++) {
+            Entry entry = entries[i];
+            int size = countVisible(oldChildren.get(i));
+            if (entry == null) {
+                result.add(REMOVED, position, size);
+            } else {
+                entry.order = matchedCount++;
+                entry.size = size;
+                position += size;
+            }
+        }
+
+        // move matched children, which are out of order
+        List<Entry> matched = new ArrayList<>(matchedCount);
+        for (Entry entry : targets) {
+            if (entry != null) {
+                matched.add(entry);
+            }
+        }
+        markOrdered(matched);
+        // slot order + 1 holds the entry of that order followed by entries moved right after it, slot 0 holds
+        // entries moved to the start, so positions are counted in O(log k) per move
+        PrefixSums sizes = new PrefixSums(matchedCount + 1);
+        for (int i = 0; i < matchedCount; i++) {
+            Entry entry = matched.get(i);
+            sizes.add(entry.order + 1, entry.size);
+        }
+        int anchor = 0;
+        for (int i = 0; i < matchedCount; i++) {
+            Entry entry = matched.get(i);
+            int slot = entry.order + 1;
+            if (entry.ordered) {
+                anchor = slot;
+                continue;
+            }
+            // put the entry right after its predecessor in the new order, which ends the anchor slot
+            int from = start + sizes.sumBefore(slot);
+            sizes.add(slot, -entry.size);
+            int to = start + sizes.sumBefore(anchor + 1);
+            sizes.add(anchor, entry.size);
+            if (from != to) {
+                result.add(MOVED, from, entry.size, to);
+            }
+        }
+
+        // insert new children and update matched ones
+        position = start;
+        for (int i = 0; i < targets.size(); i++) {
+            Entry entry = targets.get(i);
+            if (entry == null) {
+                int size = countVisible(newChildren.get(i));
+                result.add(INSERTED, position, size);
+                position += size;
+            } else {
+                position += diffNode(entry, position);
+            }
+        }
+        return position - start;
+    }
+
+    /**
+     * Record updates for the matched pair of nodes.
+     *
+     * @param entry    pair of nodes
+     * @param position position of the node
+     * @return count of visible nodes of the new node
+     */
+    private int diffNode(Entry entry, int position) {
+        INode oldNode = entry.oldNode;
+        INode newNode = entry.newNode;
+        if (subtreeHashes && oldNode instanceof Node && newNode instanceof Node) {
+            if (((Node) oldNode).getSubtreeHash() == ((Node) newNode).getSubtreeHash()) {
+                return diffExpansion(oldNode, newNode, position);
+            }
+        } else if (hash(oldNode) == hash(newNode) && countVisible(newNode) == entry.size) {
+            // sizes are compared in case of a collision, counting is cheaper than hashing
+            return entry.size;
+        }
+        boolean oldExpanded = oldNode.isExpanded();
+        boolean newExpanded = newNode.isExpanded();
+        if (!callback.areContentsTheSame(oldNode, newNode)) {
+            result.add(CHANGED, position, 1);
+        } else if (oldExpanded != newExpanded) {
+            result.add(EXPANSION_CHANGED, position, 1);
+        }
+        if (oldExpanded && newExpanded) {
+            return 1 + diffChildren(oldNode, newNode, position + 1);
+        }
+        if (oldExpanded) {
+            if (entry.size > 1) {
+                result.add(REMOVED, position + 1, entry.size - 1);
+            }
+            return 1;
+        }
+        int size = countVisible(newNode);
+        if (newExpanded && size > 1) {
+            result.add(INSERTED, position + 1, size - 1);
+        }
+        return size;
+    }
+
+    /**
+     * Record updates for the pair of subtrees with equal contents and structure, which can only differ
+     * in expansion state.
+     *
+     * @param oldNode  old node
+     * @param newNode  new node
+     * @param position position of the node
+     * @return count of visible nodes of the new node
+     */
+    private int diffExpansion(INode oldNode, INode newNode, int position) {
+        boolean oldExpanded = oldNode.isExpanded();
+        boolean newExpanded = newNode.isExpanded();
+        if (oldExpanded != newExpanded) {
+            result.add(EXPANSION_CHANGED, position, 1);
+        }
+        if (oldExpanded && newExpanded) {
+            List<? extends INode> oldChildren = oldNode.getChildren();
+            List<? extends INode> newChildren = newNode.getChildren();
+            if (!sameKeys(oldChildren, newChildren)) {
+                // hashes collided, children are matched by keys
+                return 1 + diffChildren(oldNode, newNode, position + 1);
+            }
+            int next = position + 1;
+            for (int i = 0, size = newChildren.size(); i < size; i++) {
+                next += diffExpansion(oldChildren.get(i), newChildren.get(i), next);
+            }
+            return next - position;
+        }
+        if (oldExpanded) {
+            int size = countVisible(oldNode);
+            if (size > 1) {
+                result.add(REMOVED, position + 1, size - 1);
+            }
+            return 1;
+        }
+        int size = countVisible(newNode);
+        if (size > 1) {
+            result.add(INSERTED, position + 1, size - 1);
+        }
+        return size;
+    }
+
+    /**
+     * Mark entries, which form the longest subsequence ordered the same way in the old list.
+     *
+     * @param entries entries in the new order
+     */
+    private static void markOrdered(List<Entry> entries) {
+        int size = entries.size();
+        // tails[k] - index of the smallest tail of subsequences of length k + 1
+        int[] tails = new int[size];
+        int[] previous = new int[size];
+        int length = 0;
+        for (int i = 0; i < size; i++) {
+            int order = entries.get(i).order;
+            int lo = 0, hi = length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (entries.get(tails[mid]).order < order) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            previous[i] = lo > 0 ? tails[lo - 1] : -1;
+            tails[lo] = i;
+            if (lo == length) {
+                length++;
+            }
+        }
+        for (int i = length > 0 ? tails[length - 1] : -1; i >= 0; i = previous[i]) {
+            entries.get(i).ordered = true;
+        }
+    }
+
+    private boolean sameKeys(List<? extends INode> oldChildren, List<? extends INode> newChildren) {
+        int size = oldChildren.size();
+        if (size != newChildren.size()) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            Object oldKey = callback.getKey(oldChildren.get(i));
+            Object newKey = callback.getKey(newChildren.get(i));
+            if (oldKey != null ? !oldKey.equals(newKey) : newKey != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int countVisible(INode node) {
+        return walker.count(node, true);
+    }
+
+    /**
+     * Compute hash of the subtree of {@code node}, including keys, contents and expansion state of nodes.
+     *
+     * @param node node
+     * @return hash of the subtree
+     */
+    private long hash(INode node) {
+        Long cached = hashes.get(node);
+        if (cached != null) {
+            return cached;
+        }
+        walker.walk(node, hasher);
+        return partialHashes[0];
+    }
+
+    /**
+     * Matched pair of nodes.
+     */
+    private static class Entry {
+        final INode oldNode;
+        final INode newNode;
+        /**
+         * Index among matched old children.
+         */
+        int order;
+        /**
+         * Count of visible nodes of the old node.
+         */
+        int size;
+        /**
+         * Entry is kept in place.
+         */
+        boolean ordered;
+
+        Entry(INode oldNode, INode newNode) {
+            this.oldNode = oldNode;
+            this.newNode = newNode;
+        }
+    }
+
+    /**
+     * Provides keys and contents of nodes for the diff.
+     */
+    public interface Callback {
+        /**
+         * @param node node
+         * @return key, which identifies the {@code node} among its siblings in both trees
+         */
+        Object getKey(INode node);
+
+        /**
+         * Called only for nodes with equal keys.
+         *
+         * @param oldNode node of the old tree
+         * @param newNode node of the new tree
+         * @return {@code true}, if nodes are displayed the same way
+         */
+        boolean areContentsTheSame(INode oldNode, INode newNode);
+
+        /**
+         * @param node node
+         * @return hash of the node content, equal for nodes with the same contents
+         */
+        long getContentHash(INode node);
+
+        /**
+         * Nodes with equal {@link Node#getSubtreeHash() subtree hashes} are diffed only by expansion state
+         * (children are matched by index), so the hash must cover everything, which affects the display
+         * of the node: the content and the key.
+         *
+         * @return {@code true}, if {@link #getContentHash(INode)} of every {@link Node} is its
+         * {@link Node#contentHash()} and covers the key, so cached subtree hashes can be used instead of
+         * hashing subtrees on every diff
+         */
+        default boolean isSubtreeHashCompatible() {
+            return false;
+        }
+    }
+
+    /**
+     * Recorded updates.
+     */
+    public static class Result {
+        /**
+         * Updates, encoded as (type, position, count, target) tuples.
+         */
+        private int[] updates = new int[32];
+        private int size;
+
+        /**
+         * @return count of updates
+         */
+        public int getUpdateCount() {
+            return size / 4;
+        }
+
+        /**
+         * Dispatch updates to the {@code callback}.
+         *
+         * @param callback callback
+         */
+        public void dispatchUpdatesTo(ListUpdateCallback callback) {
+            for (int i = 0; i < size; i += 4) {
+                int position = updates[i + 1];
+                int count = updates[i + 2];
+                switch (updates[i]) {
+                    case INSERTED:
+                        callback.onInserted(position, count);
+                        break;
+                    case REMOVED:
+                        callback.onRemoved(position, count);
+                        break;
+                    case MOVED:
+                        callback.onRangeMoved(position, updates[i + 3], count);
+                        break;
+                    case CHANGED:
+                        callback.onChanged(position, count, null);
+                        break;
+                    case EXPANSION_CHANGED:
+                        callback.onChanged(position, count, ChangePayload.EXPANSION_CHANGED);
+                        break;
+                }
+            }
+        }
+
+        void add(int type, int position, int count) {
+            if (size > 0 && updates[size - 4] == type) {
+                int lastPosition = updates[size - 3];
+                int lastCount = updates[size - 2];
+                // merge adjacent updates
+                if ((type == REMOVED && lastPosition == position) ||
+                        ((type == INSERTED || type == CHANGED || type == EXPANSION_CHANGED) && lastPosition + lastCount == position)) {
+                    updates[size - 2] = lastCount + count;
+                    return;
+                }
+            }
+            add(type, position, count, 0);
+        }
+
+        void add(int type, int position, int count, int target) {
+            if (size == updates.length) {
+                int[] newUpdates = new int[size * 2];
+                System.arraycopy(updates, 0, newUpdates, 0, size);
+                updates = newUpdates;
+            }
+            updates[size++] = type;
+            updates[size++] = position;
+            updates[size++] = count;
+            updates[size++] = target;
+        }
+    }
+}
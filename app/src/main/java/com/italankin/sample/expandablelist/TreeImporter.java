@@ -0,0 +1,171 @@
+package com.italankin.sample.expandablelist;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds a tree from a stream of records and publishes it to an {@link ExpandableList}.
+ * <br>
+ * Records must be listed in preorder (every parent comes before its children). Nodes are created as records
+ * are read and appended directly to their parents, so only the chain of ancestors of the current record
+ * is kept aside. The resulting top level nodes are published to the list at once, after the whole stream
+ * has been consumed.
+ *
+ * @param <T> type of the record payload
+ */
+public class TreeImporter<T> {
+
+    private final NodeFactory<? super T> factory;
+
+    public TreeImporter(NodeFactory<? super T> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Import records, described by their depth, and append them to the end of the {@code list}.
+     *
+     * @param list   target list
+     * @param reader source of records
+     * @return count of imported nodes
+     * @throws IOException if {@code reader} fails, nothing is published to the {@code list} in this case
+     */
+    public int importTo(ExpandableList list, RecordReader<? extends T> reader) throws IOException {
+        List<INode> roots = new ArrayList<>();
+        // ancestors of the current record, ancestors.get(i) has depth i
+        List<INode> ancestors = new ArrayList<>();
+        int count = 0;
+        while (reader.next()) {
+            int depth = reader.depth();
+            if (depth < 0 || depth > ancestors.size()) {
+                throw new IllegalArgumentException("record #" + count + ": depth=" + depth +
+                        " is out of bounds: [0, " + ancestors.size() + "]");
+            }
+            INode node = factory.create(reader.payload());
+            while (ancestors.size() > depth) {
+                ancestors.remove(ancestors.size() - 1);
+            }
+            if (depth == 0) {
+                roots.add(node);
+            } else {
+                ancestors.get(depth - 1).insert(node);
+            }
+            ancestors.add(node);
+            count++;
+        }
+        list.insertAll(list.getChildCount(), roots);
+        return count;
+    }
+
+    /**
+     * Import records, described by their parent keys, and append them to the end of the {@code list}.
+     * <br>
+     * Parent of each record must be one of the ancestors of the previous record (or the previous record itself).
+     *
+     * @param list   target list
+     * @param reader source of records
+     * @param <K>    type of the record key
+     * @return count of imported nodes
+     * @throws IOException if {@code reader} fails, nothing is published to the {@code list} in this case
+     */
+    public <K> int importTo(ExpandableList list, KeyedRecordReader<K, ? extends T> reader) throws IOException {
+        List<INode> roots = new ArrayList<>();
+        // keys and nodes of the ancestors of the current record
+        List<K> keys = new ArrayList<>();
+        List<INode> ancestors = new ArrayList<>();
+        int count = 0;
+        while (reader.next()) {
+            K parentKey = reader.parentKey();
+            int depth = 0;
+            if (parentKey != null) {
+                depth = keys.lastIndexOf(parentKey) + 1;
+                if (depth == 0) {
+                    throw new IllegalArgumentException("record #" + count + ": parent " + parentKey +
+                            " is not an ancestor of the previous record");
+                }
+            }
+            INode node = factory.create(reader.payload());
+            while (ancestors.size() > depth) {
+                ancestors.remove(ancestors.size() - 1);
+                keys.remove(keys.size() - 1);
+            }
+            if (depth == 0) {
+                roots.add(node);
+            } else {
+                ancestors.get(depth - 1).insert(node);
+            }
+            ancestors.add(node);
+            keys.add(reader.key());
+            count++;
+        }
+        list.insertAll(list.getChildCount(), roots);
+        return count;
+    }
+
+    /**
+     * Creates nodes for record payloads.
+     *
+     * @param <T> type of the record payload
+     */
+    public interface NodeFactory<T> {
+        /**
+         * @param payload payload of the record
+         * @return new node without parent and children
+         */
+        INode create(T payload);
+    }
+
+    /**
+     * Stream of records, which describe their position in the tree by depth.
+     *
+     * @param <T> type of the record payload
+     */
+    public interface RecordReader<T> {
+        /**
+         * Move to the next record.
+         *
+         * @return {@code true}, if there is a record to read, {@code false} if the end of stream is reached
+         */
+        boolean next() throws IOException;
+
+        /**
+         * @return depth of the current record, {@code 0} for top level records
+         */
+        int depth();
+
+        /**
+         * @return payload of the current record
+         */
+        T payload();
+    }
+
+    /**
+     * Stream of records, which describe their position in the tree by the key of the parent.
+     *
+     * @param <K> type of the record key
+     * @param <T> type of the record payload
+     */
+    public interface KeyedRecordReader<K, T> {
+        /**
+         * Move to the next record.
+         *
+         * @return {@code true}, if there is a record to read, {@code false} if the end of stream is reached
+         */
+        boolean next() throws IOException;
+
+        /**
+         * @return key of the current record
+         */
+        K key();
+
+        /**
+         * @return key of the parent of the current record, {@code null} for top level records
+         */
+        K parentKey();
+
+        /**
+         * @return payload of the current record
+         */
+        T payload();
+    }
+}
@@ -0,0 +1,379 @@
+package com.italankin.sample.expandablelist;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Flat list of the tree with its own expansion state, so several views can display one shared tree
+ * expanded differently.
+ * <br>
+ * {@link INode#isExpanded() Expansion state} of nodes is ignored, projection keeps the set of nodes
+ * expanded in it instead. Memory of a projection is proportional to the count of its visible and expanded
+ * nodes, the tree itself is not copied. Structural changes of the tree are tracked automatically,
+ * deleted nodes are forgotten along with their expansion state, moved ones keep it.
+ */
+public class TreeProjection extends AbstractList<INode> implements INode.Observer {
+
+    private final INode root;
+
+    /**
+     * Nodes expanded in this projection.
+     */
+    private final Set<INode> expanded = Collections.newSetFromMap(new IdentityHashMap<INode, Boolean>());
+
+    /**
+     * Actual list of nodes.
+     */
+    private final List<INode> rows = new ArrayList<>();
+
+    /**
+     * Positions of the {@link #rows}, only valid for rows before {@link #indexedRows}. Splices lower the bound,
+     * and positions after it are indexed again on demand, so lookups do not scan the rows from the start.
+     */
+    private final Map<INode, Integer> positions = new IdentityHashMap<>();
+    private int indexedRows = 0;
+
+    /**
+     * Rows being added or moved, reused between changes.
+     */
+    private final List<INode> block = new ArrayList<>();
+
+    private ListUpdateCallback callback;
+
+    private final TreeWalker walker = new TreeWalker();
+
+    /**
+     * List, which receives nodes of the current {@link #collectVisible(INode, List)}.
+     */
+    private List<INode> collected;
+    private final TreeWalker.Visitor collector = (node, depth) -> {
+        collected.add(node);
+        return expanded.contains(node) ? TreeWalker.Action.CONTINUE : TreeWalker.Action.SKIP_CHILDREN;
+    };
+
+    /**
+     * Count of nodes of the current {@link #countVisible(INode)}.
+     */
+    private int counted;
+    private final TreeWalker.Visitor counter = (node, depth) -> {
+        counted++;
+        return expanded.contains(node) ? TreeWalker.Action.CONTINUE : TreeWalker.Action.SKIP_CHILDREN;
+    };
+
+    private final TreeWalker.Visitor forgetter = (node, depth) -> {
+        if (expanded.isEmpty()) {
+            return TreeWalker.Action.STOP;
+        }
+        expanded.remove(node);
+        return TreeWalker.Action.CONTINUE;
+    };
+
+    /**
+     * @param root root of the tree, root itself is not a part of the list, its children are always visible
+     */
+    public TreeProjection(INode root) {
+        this.root = root;
+        for (INode child : root.getChildren()) {
+            collectVisible(child, rows);
+        }
+        root.addObserver(this);
+    }
+
+    /**
+     * Set callback for the positional changes of this list.
+     *
+     * @param callback callback, can be {@code null}
+     */
+    public void setUpdateCallback(ListUpdateCallback callback) {
+        this.callback = callback;
+    }
+
+    /**
+     * @param node member of the tree
+     * @return {@code true}, if {@code node} is expanded in this projection
+     */
+    public boolean isExpanded(INode node) {
+        return expanded.contains(node);
+    }
+
+    /**
+     * Expand or collapse {@code node} in this projection.
+     *
+     * @param node     member of the tree
+     * @param expanded new state
+     * @return count of rows added to ({@code > 0}) or removed from ({@code < 0}) the list
+     */
+    public int setExpanded(INode node, boolean expanded) {
+        if (!isMember(node)) {
+            throw new IllegalArgumentException(node + " is not a member of this tree");
+        }
+        if (this.expanded.contains(node) == expanded) {
+            return 0;
+        }
+        int position = positionOf(node);
+        if (position < 0) {
+            // node is not visible, state is applied when it becomes visible
+            setState(node, expanded);
+            return 0;
+        }
+        int delta;
+        if (expanded) {
+            setState(node, true);
+            for (INode child : node.getChildren()) {
+                collectVisible(child, block);
+            }
+            delta = block.size();
+            addRows(position + 1);
+            if (callback != null && delta > 0) {
+                callback.onInserted(position + 1, delta);
+            }
+        } else {
+            int count = countVisible(node) - 1;
+            setState(node, false);
+            removeRows(position + 1, count);
+            delta = -count;
+            if (callback != null && count > 0) {
+                callback.onRemoved(position + 1, count);
+            }
+        }
+        if (callback != null) {
+            callback.onChanged(position, 1, ChangePayload.EXPANSION_CHANGED);
+        }
+        return delta;
+    }
+
+    /**
+     * Stop tracking changes of the tree.
+     */
+    public void release() {
+        root.removeObserver(this);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // List
+    ///////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public INode get(int index) {
+        return rows.get(index);
+    }
+
+    @Override
+    public int size() {
+        return rows.size();
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        return o instanceof INode ? positionOf((INode) o) : -1;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // Observer
+    ///////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void onInserted(INode child) {
+        int position = insertionPosition(child);
+        if (position < 0) {
+            return;
+        }
+        collectVisible(child, block);
+        int count = block.size();
+        addRows(position);
+        if (callback != null) {
+            callback.onInserted(position, count);
+        }
+    }
+
+    @Override
+    public void onChanged(INode node) {
+        // expansion state of nodes is not used
+    }
+
+    @Override
+    public void onDeleted(INode oldParent, INode child) {
+        int position = positionOf(child);
+        if (position >= 0) {
+            int count = countVisible(child);
+            removeRows(position, count);
+            if (callback != null) {
+                callback.onRemoved(position, count);
+            }
+        }
+        forget(child);
+    }
+
+    @Override
+    public void onMoved(INode child, int fromIndex, int toIndex) {
+        relocate(child);
+    }
+
+    @Override
+    public void onReparented(INode oldParent, INode child) {
+        relocate(child);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // Internal
+    ///////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Add {@code node} and its visible descendants to {@code target}.
+     *
+     * @param node   node
+     * @param target target list
+     */
+    private void collectVisible(INode node, List<INode> target) {
+        collected = target;
+        walker.walk(node, collector);
+        collected = null;
+    }
+
+    /**
+     * @param node node
+     * @return count of visible nodes in the subtree of {@code node}, including the node itself
+     */
+    private int countVisible(INode node) {
+        if (!expanded.contains(node)) {
+            return 1;
+        }
+        counted = 0;
+        walker.walk(node, counter);
+        return counted;
+    }
+
+    /**
+     * Move rows of the {@code child} to match its new place in the tree, keeping expansion state of its subtree.
+     *
+     * @param child moved child
+     */
+    private void relocate(INode child) {
+        int from = positionOf(child);
+        if (from >= 0) {
+            int count = countVisible(child);
+            block.addAll(rows.subList(from, from + count));
+            removeRows(from, count);
+        }
+        int to = insertionPosition(child);
+        if (to >= 0 && from < 0) {
+            collectVisible(child, block);
+        }
+        int count = block.size();
+        if (to >= 0) {
+            addRows(to);
+        } else {
+            block.clear();
+        }
+        if (callback == null) {
+            return;
+        }
+        if (from >= 0 && to >= 0) {
+            if (from != to) {
+                callback.onRangeMoved(from, to, count);
+            }
+        } else if (from >= 0) {
+            callback.onRemoved(from, count);
+        } else if (to >= 0) {
+            callback.onInserted(to, count);
+        }
+    }
+
+    /**
+     * Find position in the {@link #rows} for the {@code child}, which is not in the list.
+     *
+     * @param child child
+     * @return position for the {@code child}, or {@code -1}, if it should not be visible
+     */
+    private int insertionPosition(INode child) {
+        INode parent = child.getParent();
+        int parentPosition = -1;
+        if (parent != root) {
+            if (!expanded.contains(parent) || (parentPosition = positionOf(parent)) < 0) {
+                return -1;
+            }
+        }
+        List<? extends INode> siblings = parent.getChildren();
+        int index = siblings.indexOf(child);
+        if (index > 0) {
+            INode previous = siblings.get(index - 1);
+            return positionOf(previous) + countVisible(previous);
+        }
+        return parentPosition + 1;
+    }
+
+    /**
+     * @param node node
+     * @return position of the {@code node} in the {@link #rows}, or {@code -1}, if it is not visible
+     */
+    private int positionOf(INode node) {
+        Integer position = positions.get(node);
+        if (position != null && position < indexedRows) {
+            return position;
+        }
+        for (int size = rows.size(); indexedRows < size; ) {
+            INode row = rows.get(indexedRows);
+            positions.put(row, indexedRows);
+            if (row == node) {
+                return indexedRows++;
+            }
+            indexedRows++;
+        }
+        return -1;
+    }
+
+    /**
+     * Insert rows of the {@link #block} at {@code position} and clear the block.
+     *
+     * @param position position of the first row
+     */
+    private void addRows(int position) {
+        rows.addAll(position, block);
+        block.clear();
+        indexedRows = Math.min(indexedRows, position);
+    }
+
+    /**
+     * @param position position of the first row
+     * @param count    count of rows to remove
+     */
+    private void removeRows(int position, int count) {
+        List<INode> removed = rows.subList(position, position + count);
+        for (int i = 0; i < count; i++) {
+            positions.remove(removed.get(i));
+        }
+        removed.clear();
+        indexedRows = Math.min(indexedRows, position);
+    }
+
+    private void setState(INode node, boolean expanded) {
+        if (expanded) {
+            this.expanded.add(node);
+        } else {
+            this.expanded.remove(node);
+        }
+    }
+
+    /**
+     * Forget expansion state of the nodes in the subtree of deleted {@code node}.
+     *
+     * @param node deleted node
+     */
+    private void forget(INode node) {
+        walker.walk(node, forgetter);
+    }
+
+    private boolean isMember(INode node) {
+        for (INode parent = node.getParent(); parent != null; parent = parent.getParent()) {
+            if (parent == root) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,185 @@
+package com.italankin.sample.expandablelist;
+
+import java.util.List;
+
+/**
+ * Iterative depth-first traversal of subtrees, which reports nodes to a {@link Visitor} before (preorder) and
+ * after (postorder) their children, and can skip subtrees or stop early.
+ * <br>
+ * Walker keeps its stack between walks, so a walk does not allocate once the stack has grown to the depth
+ * of the tree. Walks can be nested (e.g. a visitor can walk another subtree with the same walker), but a walker
+ * must not be shared between threads.
+ */
+public final class TreeWalker {
+
+    /**
+     * Parents of the nodes being visited, one per level of every active walk.
+     */
+    private INode[] parents = new INode[16];
+    /**
+     * Index of the next child to visit of the parent at the same level.
+     */
+    private int[] indices = new int[16];
+    private int top = 0;
+
+    /**
+     * Count of nodes of the current {@link #count(INode, boolean)}.
+     */
+    private int counted;
+    private final Visitor counter = (node, depth) -> {
+        counted++;
+        return Action.CONTINUE;
+    };
+    private final Visitor visibleCounter = (node, depth) -> {
+        counted++;
+        return node.isExpanded() ? Action.CONTINUE : Action.SKIP_CHILDREN;
+    };
+
+    /**
+     * Walk {@code node} and its descendants.
+     *
+     * @param node    node, its depth is {@code 0}
+     * @param visitor visitor
+     * @return {@code false}, if the walk was stopped by {@link Action#STOP}
+     */
+    public boolean walk(INode node, Visitor visitor) {
+        Action action = visitor.enter(node, 0);
+        if (action == Action.STOP) {
+            return false;
+        }
+        if (action == Action.CONTINUE && !walkBelow(node, 1, visitor)) {
+            return false;
+        }
+        visitor.leave(node, 0);
+        return true;
+    }
+
+    /**
+     * Walk descendants of {@code parent}, the {@code parent} itself is not visited.
+     *
+     * @param parent  parent
+     * @param visitor visitor, depth of the children is {@code 0}
+     * @return {@code false}, if the walk was stopped by {@link Action#STOP}
+     */
+    public boolean walkChildren(INode parent, Visitor visitor) {
+        return walkBelow(parent, 0, visitor);
+    }
+
+    /**
+     * Count {@code node} and its descendants.
+     *
+     * @param node        node
+     * @param visibleOnly skip children of collapsed nodes
+     * @return count of nodes, including the {@code node}
+     */
+    public int count(INode node, boolean visibleOnly) {
+        if (node.getChildren().isEmpty() || (visibleOnly && !node.isExpanded())) {
+            return 1;
+        }
+        int outer = counted;
+        counted = 0;
+        walk(node, visibleOnly ? visibleCounter : counter);
+        int count = counted;
+        counted = outer;
+        return count;
+    }
+
+    /**
+     * @param root      root, which is already visited (or must not be)
+     * @param baseDepth depth of children of the {@code root}
+     * @param visitor   visitor
+     * @return {@code false}, if the walk was stopped
+     */
+    private boolean walkBelow(INode root, int baseDepth, Visitor visitor) {
+        int bottom = top;
+        push(root);
+        try {
+            while (top > bottom) {
+                int level = top - 1;
+                INode parent = parents[level];
+                List<? extends INode> children = parent.getChildren();
+                int index = indices[level];
+                int depth = baseDepth + level - bottom;
+                if (index == children.size()) {
+                    parents[--top] = null;
+                    if (top > bottom) {
+                        visitor.leave(parent, depth - 1);
+                    }
+                    continue;
+                }
+                indices[level] = index + 1;
+                INode child = children.get(index);
+                Action action = visitor.enter(child, depth);
+                if (action == Action.STOP) {
+                    return false;
+                }
+                if (action == Action.CONTINUE && !child.getChildren().isEmpty()) {
+                    push(child);
+                } else {
+                    visitor.leave(child, depth);
+                }
+            }
+            return true;
+        } finally {
+            // release nodes of this walk, also if it was stopped or the visitor has thrown
+            while (top > bottom) {
+                parents[--top] = null;
+            }
+        }
+    }
+
+    private void push(INode parent) {
+        if (top == parents.length) {
+            INode[] newParents = new INode[top * 2];
+            System.arraycopy(parents, 0, newParents, 0, top);
+            parents = newParents;
+            int[] newIndices = new int[top * 2];
+            System.arraycopy(indices, 0, newIndices, 0, top);
+            indices = newIndices;
+        }
+        parents[top] = parent;
+        indices[top] = 0;
+        top++;
+    }
+
+    /**
+     * Decision of the {@link Visitor} about the visited node.
+     */
+    public enum Action {
+        /**
+         * Visit children of the node.
+         */
+        CONTINUE,
+        /**
+         * Do not visit children of the node, {@link Visitor#leave(INode, int)} is still called.
+         */
+        SKIP_CHILDREN,
+        /**
+         * Stop the walk, no more nodes are reported.
+         */
+        STOP
+    }
+
+    /**
+     * Receives nodes of the walk.
+     */
+    public interface Visitor {
+        /**
+         * Called before children of the {@code node} are visited.
+         *
+         * @param node  node
+         * @param depth depth of the {@code node} relative to the start of the walk
+         * @return what to do next
+         */
+        Action enter(INode node, int depth);
+
+        /**
+         * Called after all children of the {@code node} were visited (or skipped).
+         *
+         * @param node  node
+         * @param depth depth of the {@code node} relative to the start of the walk
+         */
+        default void leave(INode node, int depth) {
+        }
+    }
+}
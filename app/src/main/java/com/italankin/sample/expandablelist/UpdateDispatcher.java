@@ -0,0 +1,295 @@
+package com.italankin.sample.expandablelist;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects positional changes of a list and dispatches them to the target callback once per frame.
+ * <br>
+ * Adjacent and overlapping changes are merged while they are queued, e.g. streaming inserts at the end of
+ * the list become a single insert. If too many changes are queued within a frame, they are replaced with
+ * the removal and insertion of the whole list, so the work of a flush is bounded regardless of
+ * the count of events.
+ * <br>
+ * Source list must be modified on the same thread the frames are dispatched on, so the target
+ * (e.g. an adapter) sees the changes before the next layout.
+ */
+public class UpdateDispatcher implements ListUpdateCallback {
+
+    private static final int DEFAULT_MAX_PENDING = 64;
+
+    private static final int INSERTED = 1;
+    private static final int REMOVED = 2;
+    private static final int MOVED = 3;
+    private static final int CHANGED = 4;
+
+    private final List<?> source;
+    private final ListUpdateCallback target;
+    private final FrameScheduler scheduler;
+    private final int maxPending;
+
+    private final List<Op> pending = new ArrayList<>();
+    private final Runnable flush = this::flush;
+    private Runnable flushListener;
+    private ListSnapshot<?> snapshot;
+
+    /**
+     * Change of the list size, made by pending changes.
+     */
+    private int sizeDelta = 0;
+    /**
+     * Too many changes were queued, the whole list will be reported as changed.
+     */
+    private boolean overflow = false;
+    private boolean scheduled = false;
+
+    public UpdateDispatcher(List<?> source, ListUpdateCallback target, FrameScheduler scheduler) {
+        this(source, target, scheduler, DEFAULT_MAX_PENDING);
+    }
+
+    /**
+     * @param source     list, which changes are dispatched, used to determine its size at the time of flush
+     * @param target     target callback
+     * @param scheduler  scheduler of flushes
+     * @param maxPending max count of pending changes, before they are replaced with the change of the whole list
+     */
+    public UpdateDispatcher(List<?> source, ListUpdateCallback target, FrameScheduler scheduler, int maxPending) {
+        if (maxPending < 1) {
+            throw new IllegalArgumentException("maxPending=" + maxPending + " must be positive");
+        }
+        this.source = source;
+        this.target = target;
+        this.scheduler = scheduler;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Set listener, which is called at the beginning of every flush, before the target receives the changes,
+     * e.g. to update a snapshot of the source the target reads from.
+     *
+     * @param listener listener, or {@code null}
+     */
+    public void setFlushListener(Runnable listener) {
+        this.flushListener = listener;
+    }
+
+    /**
+     * Set snapshot of the source, which is advanced by pending changes at the beginning of every flush,
+     * before the target receives them. The target (e.g. an adapter) can read the snapshot, which always
+     * matches the changes it has received.
+     *
+     * @param snapshot snapshot of the source, or {@code null}
+     */
+    public void setSnapshot(ListSnapshot<?> snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Dispatch pending changes to the target immediately.
+     * <br>
+     * Does nothing if there are no pending changes, e.g. when the frame was already flushed manually.
+     */
+    public void flush() {
+        scheduled = false;
+        if (!hasPending()) {
+            return;
+        }
+        Tracing.begin(Tracing.FLUSH);
+        try {
+            if (flushListener != null) {
+                flushListener.run();
+            }
+            if (overflow) {
+                int size = source.size();
+                int oldSize = size - sizeDelta;
+                reset();
+                if (snapshot != null) {
+                    snapshot.reset();
+                }
+                if (oldSize > 0) {
+                    target.onRemoved(0, oldSize);
+                }
+                if (size > 0) {
+                    target.onInserted(0, size);
+                }
+                return;
+            }
+            List<Op> ops = new ArrayList<>(pending);
+            reset();
+            if (snapshot != null) {
+                dispatch(ops, snapshot);
+                snapshot.sync();
+            }
+            dispatch(ops, target);
+        } finally {
+            Tracing.end();
+        }
+    }
+
+    /**
+     * @return {@code true}, if there are changes waiting for the next frame
+     */
+    public boolean hasPending() {
+        return overflow || !pending.isEmpty();
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // ListUpdateCallback
+    ///////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void onInserted(int position, int count) {
+        sizeDelta += count;
+        Op last = last();
+        if (last != null && last.type == INSERTED
+                && position >= last.position && position <= last.position + last.count) {
+            last.count += count;
+        } else {
+            enqueue(INSERTED, position, count, 0, null);
+        }
+        schedule();
+    }
+
+    @Override
+    public void onRemoved(int position, int count) {
+        sizeDelta -= count;
+        Op last = last();
+        if (last != null && last.type == REMOVED && last.position == position) {
+            last.count += count;
+        } else if (last != null && last.type == REMOVED && position + count == last.position) {
+            last.position = position;
+            last.count += count;
+        } else if (last != null && last.type == INSERTED
+                && position >= last.position && position + count <= last.position + last.count) {
+            // removed items were not dispatched yet
+            last.count -= count;
+            if (last.count == 0) {
+                pending.remove(pending.size() - 1);
+            }
+        } else {
+            enqueue(REMOVED, position, count, 0, null);
+        }
+        schedule();
+    }
+
+    @Override
+    public void onMoved(int fromPosition, int toPosition) {
+        onRangeMoved(fromPosition, toPosition, 1);
+    }
+
+    @Override
+    public void onRangeMoved(int fromPosition, int toPosition, int count) {
+        if (fromPosition != toPosition) {
+            enqueue(MOVED, fromPosition, count, toPosition, null);
+            schedule();
+        }
+    }
+
+    @Override
+    public void onChanged(int position, int count, Object payload) {
+        Op last = last();
+        if (last != null && last.type == INSERTED
+                && position >= last.position && position + count <= last.position + last.count) {
+            // inserted items will be bound anyway
+            return;
+        }
+        if (last != null && last.type == CHANGED && equal(last.payload, payload)
+                && position <= last.position + last.count && last.position <= position + count) {
+            int end = Math.max(last.position + last.count, position + count);
+            last.position = Math.min(last.position, position);
+            last.count = end - last.position;
+        } else {
+            enqueue(CHANGED, position, count, 0, payload);
+        }
+        schedule();
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // Internal
+    ///////////////////////////////////////////////////////////////////////////
+
+    private static void dispatch(List<Op> ops, ListUpdateCallback callback) {
+        for (int i = 0, size = ops.size(); i < size; i++) {
+            Op op = ops.get(i);
+            switch (op.type) {
+                case INSERTED:
+                    callback.onInserted(op.position, op.count);
+                    break;
+                case REMOVED:
+                    callback.onRemoved(op.position, op.count);
+                    break;
+                case MOVED:
+                    if (op.count == 1) {
+                        callback.onMoved(op.position, op.target);
+                    } else {
+                        callback.onRangeMoved(op.position, op.target, op.count);
+                    }
+                    break;
+                case CHANGED:
+                    callback.onChanged(op.position, op.count, op.payload);
+                    break;
+            }
+        }
+    }
+
+    private Op last() {
+        return overflow || pending.isEmpty() ? null : pending.get(pending.size() - 1);
+    }
+
+    private void enqueue(int type, int position, int count, int target, Object payload) {
+        if (overflow) {
+            return;
+        }
+        if (pending.size() == maxPending) {
+            overflow = true;
+            pending.clear();
+            return;
+        }
+        pending.add(new Op(type, position, count, target, payload));
+    }
+
+    private void schedule() {
+        if (!scheduled) {
+            scheduled = true;
+            scheduler.postFrame(flush);
+        }
+    }
+
+    private void reset() {
+        pending.clear();
+        sizeDelta = 0;
+        overflow = false;
+    }
+
+    private static boolean equal(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static class Op {
+        final int type;
+        int position;
+        int count;
+        final int target;
+        final Object payload;
+
+        Op(int type, int position, int count, int target, Object payload) {
+            this.type = type;
+            this.position = position;
+            this.count = count;
+            this.target = target;
+            this.payload = payload;
+        }
+    }
+
+    /**
+     * Schedules actions to be run on the next frame.
+     */
+    public interface FrameScheduler {
+        /**
+         * Run {@code action} on the next frame.
+         *
+         * @param action action
+         */
+        void postFrame(Runnable action);
+    }
+}
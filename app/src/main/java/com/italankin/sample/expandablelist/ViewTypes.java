@@ -0,0 +1,53 @@
+package com.italankin.sample.expandablelist;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Registry of view types for node classes.
+ * <br>
+ * Types are dense and start from {@code 0}, so they can be used as indices of an array of view factories
+ * instead of checking every node against every factory.
+ */
+public final class ViewTypes {
+
+    /**
+     * Registered types, the map is replaced on registration and never modified after it was published,
+     * so lookups of registered types do not lock.
+     */
+    private static volatile Map<Class<?>, Integer> types = new HashMap<>();
+
+    private ViewTypes() {
+    }
+
+    /**
+     * Get view type of the nodes of {@code type}, registering it if necessary.
+     *
+     * @param type class of nodes
+     * @return view type
+     */
+    public static int of(Class<? extends INode> type) {
+        Integer viewType = types.get(type);
+        if (viewType != null) {
+            return viewType;
+        }
+        synchronized (ViewTypes.class) {
+            Map<Class<?>, Integer> current = types;
+            viewType = current.get(type);
+            if (viewType == null) {
+                viewType = current.size();
+                Map<Class<?>, Integer> newTypes = new HashMap<>(current);
+                newTypes.put(type, viewType);
+                types = newTypes;
+            }
+            return viewType;
+        }
+    }
+
+    /**
+     * @return count of registered view types
+     */
+    public static int count() {
+        return types.size();
+    }
+}
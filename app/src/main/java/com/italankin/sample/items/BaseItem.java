@@ -8,4 +8,9 @@ public abstract class BaseItem extends Node {
     public BaseItem(String text) {
         this.text = text;
     }
+
+    @Override
+    protected long contentHash() {
+        return text.hashCode();
+    }
 }
@@ -0,0 +1,239 @@
+package com.italankin.sample.adapter;
+
+import android.view.ViewGroup;
+
+import com.hannesdorfmann.adapterdelegates4.AdapterDelegate;
+import com.hannesdorfmann.adapterdelegates4.AdapterDelegatesManager;
+import com.italankin.sample.expandablelist.INode;
+import com.italankin.sample.expandablelist.ViewTypes;
+import com.italankin.sample.expandablelist.ViewTypesTest;
+import com.italankin.sample.items.Header1;
+import com.italankin.sample.items.Header2;
+import com.italankin.sample.items.Header3;
+import com.italankin.sample.items.Item;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Compares resolving of delegates in the {@link AdapterDelegatesManager} by view types of nodes,
+ * as {@link ExpandableListAdapter} does, against asking every delegate in turn.
+ * <br>
+ * Benchmarks only report numbers, so they are skipped unless the {@code benchmarks} system property is set.
+ */
+public class ViewTypeDispatchTest {
+
+    @Test
+    public void dispatch() {
+        List<Registration> delegates = sampleDelegates();
+        checkDispatch(byViewType(delegates), inTurn(delegates), sampleNodes(new Random(1), 1000));
+    }
+
+    @Test
+    public void dispatch_24types() {
+        List<Registration> delegates = typeDelegates();
+        checkDispatch(byViewType(delegates), inTurn(delegates), typedNodes(new Random(1), 1000));
+    }
+
+    @Test
+    public void benchmark() {
+        assumeTrue("benchmarks are disabled", Boolean.getBoolean("benchmarks"));
+        List<Registration> delegates = sampleDelegates();
+        measure("4 delegates", sampleNodes(new Random(42), 100_000), byViewType(delegates), inTurn(delegates));
+    }
+
+    @Test
+    public void benchmark_24types() {
+        assumeTrue("benchmarks are disabled", Boolean.getBoolean("benchmarks"));
+        List<Registration> delegates = typeDelegates();
+        measure("24 delegates", typedNodes(new Random(42), 100_000), byViewType(delegates), inTurn(delegates));
+    }
+
+    private static void checkDispatch(AdapterDelegatesManager<List<INode>> byViewType,
+            AdapterDelegatesManager<List<INode>> inTurn, List<INode> nodes) {
+        for (int i = 0, size = nodes.size(); i < size; i++) {
+            AdapterDelegate<List<INode>> expected = inTurn.getDelegateForViewType(inTurn.getItemViewType(nodes, i));
+            AdapterDelegate<List<INode>> actual = byViewType.getDelegateForViewType(nodes.get(i).getViewType());
+            assertSame(expected, actual);
+        }
+    }
+
+    private static void measure(String name, List<INode> nodes, AdapterDelegatesManager<List<INode>> byViewType,
+            AdapterDelegatesManager<List<INode>> inTurn) {
+        // warm up
+        for (int i = 0; i < 5; i++) {
+            byViewType(byViewType, nodes);
+            inTurn(inTurn, nodes);
+        }
+        long byViewTypeTime = 0, inTurnTime = 0;
+        int checksum = 0;
+        for (int i = 0; i < 10; i++) {
+            long start = System.nanoTime();
+            checksum += byViewType(byViewType, nodes);
+            byViewTypeTime += System.nanoTime() - start;
+            start = System.nanoTime();
+            checksum -= inTurn(inTurn, nodes);
+            inTurnTime += System.nanoTime() - start;
+        }
+        assertEquals(0, checksum);
+        System.out.printf("delegate dispatch, %s: view type=%.2f ns/item, in turn=%.2f ns/item%n",
+                name, byViewTypeTime / 10.0 / nodes.size(), inTurnTime / 10.0 / nodes.size());
+    }
+
+    /**
+     * Resolve delegates the way {@link ExpandableListAdapter} does.
+     *
+     * @return hash of the resolved delegates
+     */
+    private static int byViewType(AdapterDelegatesManager<List<INode>> manager, List<INode> nodes) {
+        int sum = 0;
+        for (int i = 0, size = nodes.size(); i < size; i++) {
+            sum += System.identityHashCode(manager.getDelegateForViewType(nodes.get(i).getViewType()));
+        }
+        return sum;
+    }
+
+    /**
+     * Resolve delegates with {@link AdapterDelegatesManager#getItemViewType(Object, int)}, which asks
+     * every delegate in turn.
+     *
+     * @return hash of the resolved delegates
+     */
+    private static int inTurn(AdapterDelegatesManager<List<INode>> manager, List<INode> nodes) {
+        int sum = 0;
+        for (int i = 0, size = nodes.size(); i < size; i++) {
+            sum += System.identityHashCode(manager.getDelegateForViewType(manager.getItemViewType(nodes, i)));
+        }
+        return sum;
+    }
+
+    /**
+     * @param delegates delegates with types of their nodes, the same instances are registered in both managers
+     * @return manager with delegates registered by {@link ViewTypes view types} of their nodes
+     */
+    private static AdapterDelegatesManager<List<INode>> byViewType(List<Registration> delegates) {
+        AdapterDelegatesManager<List<INode>> manager = new AdapterDelegatesManager<>();
+        for (Registration registration : delegates) {
+            manager.addDelegate(ViewTypes.of(registration.type), registration.delegate);
+        }
+        return manager;
+    }
+
+    /**
+     * @return manager, which asks delegates in the order of registration
+     */
+    private static AdapterDelegatesManager<List<INode>> inTurn(List<Registration> delegates) {
+        AdapterDelegatesManager<List<INode>> manager = new AdapterDelegatesManager<>();
+        for (Registration registration : delegates) {
+            manager.addDelegate(registration.delegate);
+        }
+        return manager;
+    }
+
+    private static List<Registration> sampleDelegates() {
+        List<Registration> delegates = new ArrayList<>();
+        delegates.add(new Registration(Item.class, new ItemAdapterDelegate(null)));
+        delegates.add(new Registration(Header1.class, new Header1AdapterDelegate(null)));
+        delegates.add(new Registration(Header2.class, new Header2AdapterDelegate(null)));
+        delegates.add(new Registration(Header3.class, new Header3AdapterDelegate(null)));
+        return delegates;
+    }
+
+    /**
+     * @return delegates for {@link ViewTypesTest#TYPES}, each resolved with an {@code instanceof} check
+     */
+    private static List<Registration> typeDelegates() {
+        List<Registration> delegates = new ArrayList<>();
+        for (Class<? extends INode> type : ViewTypesTest.TYPES) {
+            delegates.add(new Registration(type, new TypeDelegate(type)));
+        }
+        return delegates;
+    }
+
+    /**
+     * @return nodes of the sample, mostly items, as in {@link com.italankin.sample.MainActivity MainActivity}
+     */
+    private static List<INode> sampleNodes(Random random, int count) {
+        List<INode> nodes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            switch (random.nextInt(8)) {
+                case 0:
+                    nodes.add(new Header1(i));
+                    break;
+                case 1:
+                    nodes.add(new Header2(i));
+                    break;
+                case 2:
+                    nodes.add(new Header3(i));
+                    break;
+                default:
+                    nodes.add(new Item(i));
+                    break;
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * @return nodes of {@link ViewTypesTest#TYPES}, evenly distributed
+     */
+    private static List<INode> typedNodes(Random random, int count) {
+        List<INode> nodes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Class<? extends INode> type = ViewTypesTest.TYPES.get(random.nextInt(ViewTypesTest.TYPES.size()));
+            try {
+                nodes.add(type.getDeclaredConstructor().newInstance());
+            } catch (ReflectiveOperationException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return nodes;
+    }
+
+    private static class Registration {
+        final Class<? extends INode> type;
+        final AdapterDelegate<List<INode>> delegate;
+
+        Registration(Class<? extends INode> type, AdapterDelegate<List<INode>> delegate) {
+            this.type = type;
+            this.delegate = delegate;
+        }
+    }
+
+    /**
+     * Delegate for nodes of a single class, never asked to create views.
+     */
+    private static class TypeDelegate extends AdapterDelegate<List<INode>> {
+        private final Class<? extends INode> type;
+
+        TypeDelegate(Class<? extends INode> type) {
+            this.type = type;
+        }
+
+        @Override
+        protected boolean isForViewType(@NonNull List<INode> items, int position) {
+            return type.isInstance(items.get(position));
+        }
+
+        @NonNull
+        @Override
+        protected RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected void onBindViewHolder(@NonNull List<INode> items, int position,
+                @NonNull RecyclerView.ViewHolder holder, @NonNull List<Object> payloads) {
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.italankin.sample.expandablelist;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks, that hot paths of {@link ExpandableList} stay within their allocation budgets.
+ * <br>
+ * Each operation is warmed up first, so class loading and lazy initialization are not counted,
+ * then allocated bytes of the current thread are measured for a batch of operations.
+ */
+public class AllocationTest {
+
+    private static final int WARMUP = 2_000;
+    private static final int ITERATIONS = 10_000;
+    /**
+     * Allowance for the measurement itself, per batch.
+     */
+    private static final long SLACK = 1024;
+
+    private com.sun.management.ThreadMXBean threads;
+    private ExpandableList list;
+
+    @Before
+    public void setUp() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        list = ExpandableListTest.randomList(new Random(44), 4);
+        list.invalidate();
+    }
+
+    @Test
+    public void get() {
+        int size = list.size();
+        assertBudget("get", 0, () -> {
+            for (int i = 0; i < size; i++) {
+                list.get(i);
+            }
+        });
+    }
+
+    @Test
+    public void indexOf() {
+        INode last = list.get(list.size() - 1);
+        assertBudget("indexOf", 0, () -> list.indexOf(last));
+    }
+
+    @Test
+    public void iteration() {
+        // the iterator itself
+        assertBudget("iteration", 32, () -> {
+            for (INode node : list) {
+                node.isExpanded();
+            }
+        });
+    }
+
+    @Test
+    public void getChildren() {
+        List<INode> nodes = new ArrayList<>(list);
+        assertBudget("getChildren", 0, () -> {
+            for (int i = 0, size = nodes.size(); i < size; i++) {
+                nodes.get(i).getChildren();
+            }
+        });
+    }
+
+    @Test
+    public void countVisible() {
+        assertBudget("countVisible", 0, () -> list.countVisible(list));
+    }
+
+    @Test
+    public void walk() {
+        int[] count = new int[1];
+        TreeWalker.Visitor visitor = (node, depth) -> {
+            count[0]++;
+            return TreeWalker.Action.CONTINUE;
+        };
+        assertBudget("walk", 0, () -> list.walk(visitor));
+    }
+
+    @Test
+    public void invalidate() {
+        assertBudget("invalidate", 0, () -> list.invalidate());
+    }
+
+    @Test
+    public void expandCollapse() {
+        INode node = largestExpanded();
+        int rows = list.collapse(node);
+        // copy of the block on expand and a sub list view on collapse
+        long budget = 16 + 4L * rows + 64;
+        assertBudget("expand/collapse of " + rows + " rows", budget, () -> {
+            list.expand(node);
+            list.collapse(node);
+        });
+    }
+
+    private INode largestExpanded() {
+        INode result = null;
+        int max = 0;
+        for (INode node : new ArrayList<>(list)) {
+            int count = list.countVisible(node);
+            if (node.isExpanded() && count > max) {
+                max = count;
+                result = node;
+            }
+        }
+        assertTrue(result != null);
+        return result;
+    }
+
+    /**
+     * Run {@code operation} and check, that it allocates no more than {@code budget} bytes per run, on average.
+     *
+     * @param name      name of the operation
+     * @param budget    budget in bytes
+     * @param operation operation
+     */
+    private void assertBudget(String name, long budget, Runnable operation) {
+        long id = Thread.currentThread().getId();
+        for (int i = 0; i < WARMUP; i++) {
+            operation.run();
+        }
+        long before = threads.getThreadAllocatedBytes(id);
+        for (int i = 0; i < ITERATIONS; i++) {
+            operation.run();
+        }
+        long allocated = threads.getThreadAllocatedBytes(id) - before;
+        long limit = budget * ITERATIONS + SLACK;
+        assertTrue(name + " allocated " + allocated + " bytes in " + ITERATIONS + " runs, budget is " + limit,
+                allocated <= limit);
+    }
+}
@@ -8,12 +8,19 @@ import java.util.Collections;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class ExpandableListTest {
 
@@ -21,6 +28,43 @@ public class ExpandableListTest {
         return list.size() > 0 ? list.get(list.size() - 1) : null;
     }
 
+    /**
+     * Reference flattening of the list.
+     */
+    static List<INode> flatten(INode node) {
+        List<INode> result = new ArrayList<>();
+        for (INode child : node.getChildren()) {
+            result.add(child);
+            if (child.isExpanded()) {
+                result.addAll(flatten(child));
+            }
+        }
+        return result;
+    }
+
+    static ExpandableList randomList(Random random, int depth) {
+        ExpandableList list = new ExpandableList();
+        fill(list, random, depth);
+        return list;
+    }
+
+    private static void fill(INode node, Random random, int depth) {
+        for (int i = random.nextInt(5); i >= 0; i--) {
+            Node child = new Node();
+            if (depth > 0) {
+                fill(child, random, depth - 1);
+            }
+            child.setExpanded(random.nextInt(3) > 0);
+            node.insert(child);
+        }
+    }
+
+    static RecordingCallback record(ExpandableList list) {
+        RecordingCallback callback = new RecordingCallback(new ArrayList<>(list));
+        list.setUpdateCallback(callback);
+        return callback;
+    }
+
     @Test
     public void get_vs_getChild() {
         ExpandableList list = new ListBuilder()
@@ -307,6 +351,496 @@ public class ExpandableListTest {
         list.collapse(new Node());
     }
 
+    @Test
+    public void revealPath() {
+        INode target = new Node();
+        ExpandableList list = new ListBuilder()
+                .add(new Node())
+                .add(new NodeBuilder(false)
+                        .add(1)
+                        .add(new NodeBuilder(false)
+                                .add(new NodeBuilder(true)
+                                        .add(target))))
+                .build();
+        assertEquals(2, list.size());
+        assertEquals(-1, list.indexOf(target));
+        assertEquals(5, list.revealPath(target));
+        assertEquals(6, list.size());
+        assertTrue(list.getChild(1).isExpanded());
+        // already visible
+        assertEquals(5, list.revealPath(target));
+        // top level node
+        assertEquals(0, list.revealPath(list.getChild(0)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void revealPath_nonMember() {
+        ExpandableList list = new ExpandableList();
+        list.revealPath(new Node());
+    }
+
+    @Test
+    public void updateCallback() {
+        ExpandableList list = new ListBuilder()
+                .add(new NodeBuilder(true)
+                        .add(2)
+                        .add(new NodeBuilder(false)
+                                .add(2)))
+                .add(new NodeBuilder(false)
+                        .add(1))
+                .build();
+        RecordingCallback callback = record(list);
+        INode inner = list.getChild(0).getChildren().get(2);
+
+        list.expand(inner);
+        assertEquals("[inserted(4, 2), changed(3, 1)]", callback.events.toString());
+        assertEquals(Collections.singletonList(ChangePayload.EXPANSION_CHANGED), callback.payloads);
+        callback.verify(list);
+
+        list.collapse(list.getChild(0));
+        assertEquals("[removed(1, 5), changed(0, 1)]", callback.events.toString());
+        callback.verify(list);
+
+        list.getChild(1).insert(new Node());
+        assertEquals(0, callback.events.size());
+        list.getChild(0).insert(0, new Node());
+        assertEquals(0, callback.events.size());
+        list.insert(1, new Node());
+        assertEquals("[inserted(1, 1)]", callback.events.toString());
+        callback.verify(list);
+
+        list.expand(list.getChild(0));
+        callback.verify(list);
+        inner.delete(inner.getChildren().get(0));
+        assertEquals("[removed(5, 1)]", callback.events.toString());
+        callback.verify(list);
+
+        list.delete(list.getChild(0));
+        assertEquals("[removed(0, 6)]", callback.events.toString());
+        callback.verify(list);
+        assertEquals(flatten(list), new ArrayList<>(list));
+    }
+
+    @Test
+    public void move_withinParent() {
+        ExpandableList list = new ListBuilder()
+                .add(new NodeBuilder(true)
+                        .add(1))
+                .add(new Node())
+                .add(new NodeBuilder(true)
+                        .add(2))
+                .build();
+        RecordingCallback callback = record(list);
+        INode first = list.getChild(0);
+        assertEquals(4, list.move(first, list, 2));
+        assertEquals(first, list.getChild(2));
+        assertEquals(flatten(list), new ArrayList<>(list));
+        callback.verify(list);
+        assertEquals(0, list.move(first, list, 0));
+        assertEquals(flatten(list), new ArrayList<>(list));
+        callback.verify(list);
+    }
+
+    @Test
+    public void move_reparent() {
+        INode moved = new NodeBuilder(true)
+                .add(2)
+                .build();
+        ExpandableList list = new ListBuilder()
+                .add(new NodeBuilder(true)
+                        .add(1)
+                        .add(moved))
+                .add(new NodeBuilder(false)
+                        .add(1))
+                .add(new NodeBuilder(true)
+                        .add(1))
+                .build();
+        RecordingCallback callback = record(list);
+        int absoluteSize = list.absoluteSize();
+
+        // expanded -> expanded
+        assertEquals(5, list.move(moved, list.getChild(2), 1));
+        assertEquals(absoluteSize, list.absoluteSize());
+        assertEquals(flatten(list), new ArrayList<>(list));
+        assertEquals(3, callback.events.size());
+        callback.verify(list);
+
+        // expanded -> collapsed
+        assertEquals(-1, list.move(moved, list.getChild(1)));
+        assertEquals(flatten(list), new ArrayList<>(list));
+        assertEquals("[removed(5, 3)]", callback.events.toString());
+        callback.verify(list);
+
+        // collapsed -> top level
+        assertEquals(0, list.move(moved, list, 0));
+        assertEquals(flatten(list), new ArrayList<>(list));
+        assertEquals("[inserted(0, 3)]", callback.events.toString());
+        callback.verify(list);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void move_toSubtree() {
+        ExpandableList list = new ListBuilder()
+                .add(new NodeBuilder(true)
+                        .add(1))
+                .build();
+        list.move(list.getChild(0), list.getChild(0).getChildren().get(0), 0);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void move_indexOutOfBounds() {
+        ExpandableList list = new ListBuilder()
+                .add(new Node())
+                .add(new Node())
+                .build();
+        list.move(list.getChild(0), list, 2);
+    }
+
+    @Test
+    public void move_toSortedNode() {
+        SortedNode sorted = new SortedNode((lhs, rhs) -> Long.compare(lhs.getId(), rhs.getId()));
+        sorted.setExpanded(true);
+        Node moved = new Node();
+        ExpandableList list = new ListBuilder()
+                .add(moved)
+                .add(sorted)
+                .build();
+        sorted.insert(new Node());
+        RecordingCallback callback = record(list);
+        assertEquals(1, list.move(moved, sorted, 1));
+        assertSame(moved, sorted.getChildren().get(0));
+        assertEquals(flatten(list), new ArrayList<>(list));
+        callback.verify(list);
+    }
+
+    @Test
+    public void move_rejected() {
+        Node rejecting = new Node() {
+            @Override
+            public int insert(int index, INode child) {
+                throw new IllegalStateException();
+            }
+        };
+        rejecting.setExpanded(true);
+        ExpandableList list = new ListBuilder()
+                .add(new NodeBuilder(true)
+                        .add(2))
+                .add(rejecting)
+                .build();
+        RecordingCallback callback = record(list);
+        INode moved = list.getChild(0).getChildren().get(1);
+        try {
+            list.move(moved, rejecting, 0);
+            fail();
+        } catch (IllegalStateException expected) {
+            // node is returned to its place
+        }
+        assertSame(moved, list.getChild(0).getChildren().get(1));
+        assertEquals(flatten(list), new ArrayList<>(list));
+        assertTrue(callback.events.isEmpty());
+
+        // changes are not ignored after the failure
+        list.insert(new Node());
+        assertEquals(flatten(list), new ArrayList<>(list));
+        callback.verify(list);
+    }
+
+    @Test
+    public void move_detached() {
+        ExpandableList list = new ListBuilder()
+                .add(new Node())
+                .build();
+        try {
+            list.move(new Node(), list, 0);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // not a member
+        }
+        try {
+            list.move(list.getChild(0), null, 0);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // no parent
+        }
+        assertEquals(1, list.size());
+        list.insert(new Node());
+        assertEquals(2, list.size());
+    }
+
+    @Test
+    public void ids_unique() {
+        ExpandableList list = new ListBuilder()
+                .add(new NodeBuilder(true)
+                        .add(3))
+                .add(new NodeBuilder(false)
+                        .add(2))
+                .build();
+        List<Long> ids = new ArrayList<>();
+        for (INode node : flatten(list)) {
+            assertFalse(ids.contains(node.getId()));
+            ids.add(node.getId());
+        }
+    }
+
+    @Test
+    public void findById() {
+        INode hidden = new Node(-10);
+        ExpandableList list = new ListBuilder()
+                .add(new NodeBuilder(true)
+                        .add(2))
+                .add(new NodeBuilder(false)
+                        .add(hidden))
+                .build();
+        INode visible = list.getChild(0).getChildren().get(1);
+        assertSame(visible, list.findById(visible.getId()));
+        assertEquals(2, list.positionOfId(visible.getId()));
+        assertSame(hidden, list.findById(-10));
+        assertEquals(-1, list.positionOfId(-10));
+
+        list.move(hidden, list, 0);
+        assertSame(hidden, list.findById(-10));
+        assertEquals(0, list.positionOfId(-10));
+
+        INode parent = list.getChild(1);
+        list.delete(parent);
+        assertNull(list.findById(parent.getId()));
+        assertNull(list.findById(visible.getId()));
+        assertEquals(-1, list.positionOfId(visible.getId()));
+
+        list.clear();
+        assertNull(list.findById(-10));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void findById_duplicate() {
+        ExpandableList list = new ExpandableList();
+        list.insert(new Node(1));
+        list.insert(new NodeBuilder(true).add(new Node(1)).build());
+    }
+
+    @Test
+    public void findById_duplicateNotAttached() {
+        ExpandableList list = new ExpandableList();
+        list.insert(new Node(1));
+        INode parent = new NodeBuilder(true).add(new Node(1)).build();
+        try {
+            list.insert(parent);
+            fail();
+        } catch (IllegalStateException expected) {
+            // id=1 is taken
+        }
+        assertNull(parent.getParent());
+        assertEquals(1, list.getChildren().size());
+        assertEquals(1, list.size());
+        assertNull(list.findById(parent.getId()));
+
+        try {
+            list.insertAll(Arrays.asList(new Node(2), new Node(3), new Node(2)));
+            fail();
+        } catch (IllegalStateException expected) {
+            // ids of inserted nodes clash
+        }
+        assertEquals(1, list.getChildren().size());
+        assertEquals(flatten(list), new ArrayList<>(list));
+        assertNull(list.findById(2));
+
+        list.insert(new Node(2));
+        assertEquals(2, list.size());
+    }
+
+    @Test
+    public void ids_userAndAutomatic() {
+        Node auto = new Node();
+        assertTrue(auto.getId() < Node.MIN_USER_ID);
+        assertEquals(Node.MIN_USER_ID, new Node(Node.MIN_USER_ID).getId());
+        try {
+            new Node(auto.getId());
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // reserved for automatic ids
+        }
+        try {
+            new Node(INode.NO_ID);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // reserved
+        }
+    }
+
+    @Test
+    public void ids_noId() {
+        ExpandableList list = new ExpandableList();
+        for (int i = 0; i < 2; i++) {
+            list.insert(new Node() {
+                @Override
+                public long getId() {
+                    return NO_ID;
+                }
+            });
+        }
+        assertEquals(2, list.size());
+        assertNull(list.findById(INode.NO_ID));
+        list.clear();
+        assertEquals(0, list.size());
+    }
+
+    @Test
+    public void ancestorPositions() {
+        Random random = new Random(3);
+        ExpandableList list = randomList(random, 4);
+        int[] out = new int[8];
+        for (int round = 0; round < 20; round++) {
+            for (int position = 0; position < list.size(); position++) {
+                List<Integer> expected = new ArrayList<>();
+                for (INode p = list.get(position).getParent(); p != list; p = p.getParent()) {
+                    expected.add(0, list.indexOf(p));
+                }
+                int count = list.ancestorPositions(position, out);
+                List<Integer> actual = new ArrayList<>();
+                for (int i = 0; i < count; i++) {
+                    actual.add(out[i]);
+                }
+                assertEquals(expected, actual);
+                assertEquals(expected.size(), list.ancestorPositions(position).length);
+                assertEquals(expected.isEmpty() ? -1 : (int) expected.get(expected.size() - 1),
+                        list.getParentPosition(position));
+            }
+            // toggle random node
+            INode node = list.get(random.nextInt(list.size()));
+            node.setExpanded(!node.isExpanded());
+        }
+    }
+
+    @Test
+    public void nextSiblingHeaderPosition() {
+        Random random = new Random(4);
+        ExpandableList list = randomList(random, 4);
+        for (int round = 0; round < 20; round++) {
+            for (int position = 0; position < list.size(); position++) {
+                INode node = list.get(position);
+                List<? extends INode> siblings = node.getParent().getChildren();
+                int index = siblings.indexOf(node);
+                int expected = index < siblings.size() - 1 ? list.indexOf(siblings.get(index + 1)) : -1;
+                assertEquals(expected, list.nextSiblingHeaderPosition(position));
+            }
+            INode node = list.get(random.nextInt(list.size()));
+            if (random.nextBoolean()) {
+                node.setExpanded(!node.isExpanded());
+            } else {
+                node.insert(new Node());
+            }
+        }
+    }
+
+    @Test
+    public void depthAndLastChild() {
+        Random random = new Random(5);
+        ExpandableList list = randomList(random, 4);
+        for (int round = 0; round < 20; round++) {
+            for (int position = 0; position < list.size(); position++) {
+                INode node = list.get(position);
+                int depth = 0;
+                for (INode p = node.getParent(); p != list; p = p.getParent()) {
+                    depth++;
+                }
+                assertEquals(depth, list.getDepth(position));
+                List<? extends INode> siblings = node.getParent().getChildren();
+                assertEquals(siblings.get(siblings.size() - 1) == node, list.isLastChild(position));
+            }
+            INode node = list.get(random.nextInt(list.size()));
+            if (random.nextBoolean()) {
+                node.setExpanded(!node.isExpanded());
+            } else {
+                node.getParent().insert(new Node());
+            }
+        }
+    }
+
+    @Test
+    public void spliterator() {
+        ExpandableList list = randomList(new Random(47), 5);
+        assertTrue(list instanceof RandomAccess);
+        Spliterator<INode> spliterator = list.spliterator();
+        assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED));
+        assertEquals(list.size(), spliterator.estimateSize());
+        assertEquals(new ArrayList<>(list), list.stream().parallel().collect(Collectors.toList()));
+
+        List<INode> all = new ArrayList<>();
+        NodeTest.collectAll(list, all);
+        assertEquals(all, StreamSupport.stream(list.subtreeSpliterator(), true).collect(Collectors.toList()));
+        List<INode> split = new ArrayList<>();
+        NodeTest.splitAll(list.subtreeSpliterator(), split);
+        assertEquals(all, split);
+    }
+
+    @Test
+    public void directNotifications() {
+        class CountingNode extends Node {
+            int events = 0;
+
+            @Override
+            public void onChanged(INode node) {
+                events++;
+                super.onChanged(node);
+            }
+
+            @Override
+            public void onInserted(INode child) {
+                events++;
+                super.onInserted(child);
+            }
+        }
+        CountingNode middle = new CountingNode();
+        INode leaf = new NodeBuilder(false).add(1).build();
+        middle.insert(leaf);
+        ExpandableList list = new ListBuilder()
+                .add(new NodeBuilder(true)
+                        .add(middle))
+                .build();
+        middle.setExpanded(true);
+        middle.events = 0;
+
+        // ancestors are not notified, while there are no observers
+        leaf.setExpanded(true);
+        leaf.insert(new Node());
+        assertEquals(0, middle.events);
+        assertEquals(flatten(list), new ArrayList<>(list));
+
+        NodeTest.CountingObserver observer = new NodeTest.CountingObserver();
+        middle.addObserver(observer);
+        leaf.setExpanded(false);
+        assertEquals(1, middle.events);
+        assertEquals(1, observer.events);
+        assertEquals(flatten(list), new ArrayList<>(list));
+
+        middle.removeObserver(observer);
+        leaf.setExpanded(true);
+        assertEquals(1, middle.events);
+        assertEquals(flatten(list), new ArrayList<>(list));
+
+        // observed nodes out of the list are not counted
+        INode detached = list.getChild(0);
+        list.delete(detached);
+        middle.addObserver(observer);
+        list.insert(new Node());
+        leaf.setExpanded(false);
+        assertEquals(2, observer.events);
+        middle.removeObserver(observer);
+        list.insert(detached);
+        leaf.setExpanded(true);
+        assertEquals(2, observer.events);
+        assertEquals(2, middle.events);
+        assertEquals(flatten(list), new ArrayList<>(list));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void ancestorPositions_outOfBounds() {
+        ExpandableList list = new ListBuilder()
+                .add(new Node())
+                .build();
+        list.ancestorPositions(1);
+    }
+
     @Test
     public void isChild() {
         INode node1 = new Node();
@@ -491,6 +1025,11 @@ public class ExpandableListTest {
         assertEquals(4, list.size());
         assertEquals(5, list.absoluteSize());
         assertEquals(1, list.getChild(1).getChildren().size());
+        // appended, like Node.insertAll(Collection)
+        INode last = new Node();
+        list.insertAll(Collections.singleton(last));
+        assertSame(last, list.getChild(4));
+        assertEquals(flatten(list), new ArrayList<>(list));
     }
 
     @Test
@@ -520,6 +1059,108 @@ public class ExpandableListTest {
         assertEquals(Node3.class, list.getChild(4).getClass());
     }
 
+    @Test
+    public void insertAll_nested() {
+        ExpandableList list = new ListBuilder()
+                .add(new NodeBuilder(true)
+                        .add(2))
+                .add(new NodeBuilder(false)
+                        .add(1))
+                .build();
+        RecordingCallback callback = record(list);
+        Node parent = (Node) list.getChild(0);
+        List<INode> nodes = Arrays.asList(
+                new NodeBuilder(true).add(2).build(),
+                new NodeBuilder(false).add(3).build(),
+                new Node());
+        assertEquals(5, parent.insertAll(1, nodes));
+        assertEquals("[inserted(2, 5)]", callback.events.toString());
+        callback.verify(new ArrayList<>(list));
+        assertEquals(flatten(list), new ArrayList<>(list));
+        assertSame(nodes.get(1), list.findById(nodes.get(1).getId()));
+        assertSame(nodes.get(0).getChildren().get(0), list.findById(nodes.get(0).getChildren().get(0).getId()));
+
+        // invisible parent
+        assertEquals(2, ((Node) list.getChild(1)).insertAll(Arrays.asList(new Node(), new Node())));
+        assertTrue(callback.events.isEmpty());
+        assertEquals(3, list.getChild(1).getChildren().size());
+        assertEquals(flatten(list), new ArrayList<>(list));
+    }
+
+    @Test
+    public void insertAll_invalid() {
+        ExpandableList list = new ListBuilder()
+                .add(new NodeBuilder(true)
+                        .add(1))
+                .build();
+        Node parent = (Node) list.getChild(0);
+        INode node = new Node();
+        try {
+            parent.insertAll(Arrays.asList(new Node(), node, node));
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            parent.insertAll(Arrays.asList(new Node(), parent.getChildren().get(0)));
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        // nothing is inserted
+        assertEquals(1, parent.getChildren().size());
+        assertNull(node.getParent());
+        assertEquals(flatten(list), new ArrayList<>(list));
+    }
+
+    @Test
+    public void deleteRange() {
+        ExpandableList list = new ListBuilder()
+                .add(new NodeBuilder(true)
+                        .add(new NodeBuilder(true).add(2))
+                        .add(new NodeBuilder(false).add(2))
+                        .add(new NodeBuilder(true).add(1))
+                        .add(new Node()))
+                .add(new Node())
+                .build();
+        RecordingCallback callback = record(list);
+        Node parent = (Node) list.getChild(0);
+        List<INode> deleted = new ArrayList<>(parent.getChildren().subList(1, 3));
+        assertEquals(3, parent.deleteRange(1, 3));
+        assertEquals("[removed(4, 3)]", callback.events.toString());
+        callback.verify(new ArrayList<>(list));
+        assertEquals(flatten(list), new ArrayList<>(list));
+        for (INode node : deleted) {
+            assertNull(node.getParent());
+            assertNull(list.findById(node.getId()));
+            assertNull(list.findById(node.getChildren().get(0).getId()));
+        }
+        assertEquals(0, parent.deleteRange(1, 1));
+        assertTrue(callback.events.isEmpty());
+    }
+
+    @Test
+    public void clear_singleEvent() {
+        ExpandableList list = new ListBuilder()
+                .add(new NodeBuilder(true)
+                        .add(3))
+                .add(new NodeBuilder(true)
+                        .add(new NodeBuilder(true).add(2)))
+                .build();
+        RecordingCallback callback = record(list);
+        list.getChild(1).clear();
+        assertEquals("[removed(5, 3)]", callback.events.toString());
+        callback.verify(new ArrayList<>(list));
+        list.clear();
+        assertEquals("[removed(0, 5)]", callback.events.toString());
+        callback.verify(new ArrayList<>(list));
+        assertEquals(0, list.size());
+        assertEquals(0, list.absoluteSize());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void deleteRange_outOfBounds() {
+        new ListBuilder().add(new Node()).build().deleteRange(0, 2);
+    }
+
     @Test(expected = IndexOutOfBoundsException.class)
     public void addAll_indexOutOfBounds() {
         new ExpandableList().insertAll(1, Collections.emptyList());
@@ -0,0 +1,156 @@
+package com.italankin.sample.expandablelist;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FilteredExpandableListTest {
+
+    private ExpandableList list;
+    private TextNode a, a1, a2, a2x, b, b1, c;
+
+    @Before
+    public void setUp() {
+        a = new TextNode("a");
+        a1 = new TextNode("a1 apple");
+        a2 = new TextNode("a2");
+        a2x = new TextNode("a2x apricot");
+        b = new TextNode("b banana");
+        b1 = new TextNode("b1");
+        c = new TextNode("c cherry");
+        a.insert(a1);
+        a.insert(a2);
+        a2.insert(a2x);
+        b.insert(b1);
+        list = new ExpandableList(Arrays.asList(a, b, c));
+        list.setExpandedDeep(true);
+    }
+
+    @Test
+    public void filter_keepsAncestors() {
+        FilteredExpandableList filtered = new FilteredExpandableList(list, contains("ap"));
+        assertEquals(Arrays.<INode>asList(a, a1, a2, a2x), filtered);
+        assertTrue(filtered.matches(a1));
+        assertFalse(filtered.matches(a2));
+    }
+
+    @Test
+    public void filter_respectsExpansion() {
+        FilteredExpandableList filtered = new FilteredExpandableList(list, contains("ap"));
+        RecordingCallback callback = record(filtered);
+        a2.setExpanded(false);
+        assertEquals(Arrays.<INode>asList(a, a1, a2), filtered);
+        callback.verify(filtered);
+        a.setExpanded(false);
+        assertEquals(Arrays.<INode>asList(a), filtered);
+        callback.verify(filtered);
+        list.setExpandedDeep(true);
+        assertEquals(Arrays.<INode>asList(a, a1, a2, a2x), filtered);
+        callback.verify(filtered);
+    }
+
+    @Test
+    public void refresh() {
+        FilteredExpandableList filtered = new FilteredExpandableList(list, contains("ap"));
+        RecordingCallback callback = record(filtered);
+        b1.text = "grape";
+        filtered.refresh(b1);
+        assertEquals(Arrays.<INode>asList(a, a1, a2, a2x, b, b1), filtered);
+        assertEquals("[inserted(4, 2)]", callback.events.toString());
+        callback.verify(filtered);
+
+        a2x.text = "a2x";
+        filtered.refresh(a2x);
+        assertEquals(Arrays.<INode>asList(a, a1, b, b1), filtered);
+        assertEquals("[removed(2, 2)]", callback.events.toString());
+        callback.verify(filtered);
+
+        a1.text = "a1 apple pie";
+        filtered.refresh(a1);
+        assertEquals("[changed(1, 1)]", callback.events.toString());
+        assertEquals(Collections.singletonList(null), callback.payloads);
+        callback.verify(filtered);
+    }
+
+    @Test
+    public void refine() {
+        FilteredExpandableList filtered = new FilteredExpandableList(list, contains("a"));
+        assertEquals(5, filtered.size());
+        RecordingCallback callback = record(filtered);
+        filtered.refine(contains("an"));
+        assertEquals(Arrays.<INode>asList(b), filtered);
+        callback.verify(filtered);
+        filtered.setPredicate(contains("r"));
+        assertEquals(Arrays.<INode>asList(a, a2, a2x, c), filtered);
+        callback.verify(filtered);
+    }
+
+    @Test
+    public void structuralChanges() {
+        FilteredExpandableList filtered = new FilteredExpandableList(list, contains("ap"));
+        RecordingCallback callback = record(filtered);
+
+        TextNode grape = new TextNode("grape");
+        b1.insert(grape);
+        b1.setExpanded(true);
+        assertEquals(Arrays.<INode>asList(a, a1, a2, a2x, b, b1, grape), filtered);
+        callback.verify(filtered);
+
+        TextNode d = new TextNode("d");
+        TextNode papaya = new TextNode("papaya");
+        d.insert(papaya);
+        list.insert(1, d);
+        assertEquals(Arrays.<INode>asList(a, a1, a2, a2x, d, b, b1, grape), filtered);
+        callback.verify(filtered);
+
+        a.delete(a2);
+        assertEquals(Arrays.<INode>asList(a, a1, d, b, b1, grape), filtered);
+        callback.verify(filtered);
+
+        b1.delete(grape);
+        assertEquals(Arrays.<INode>asList(a, a1, d), filtered);
+        callback.verify(filtered);
+
+        list.clear();
+        assertTrue(filtered.isEmpty());
+        callback.verify(filtered);
+    }
+
+    @Test
+    public void release() {
+        FilteredExpandableList filtered = new FilteredExpandableList(list, contains("ap"));
+        filtered.release();
+        list.insert(new TextNode("grape"));
+        assertEquals(4, filtered.size());
+    }
+
+    private static RecordingCallback record(FilteredExpandableList filtered) {
+        RecordingCallback callback = new RecordingCallback(new ArrayList<>(filtered));
+        filtered.setUpdateCallback(callback);
+        return callback;
+    }
+
+    private static FilteredExpandableList.Predicate contains(String query) {
+        return node -> ((TextNode) node).text.contains(query);
+    }
+
+    static class TextNode extends Node {
+        String text;
+
+        TextNode(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.italankin.sample.expandablelist;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Reports retained heap per node and per visible row for different tree shapes and expansion ratios.
+ * <br>
+ * Sizes are measured as differences of used heap after garbage collection, so they are approximate
+ * and depend on the JVM. The test only reports numbers, so it is skipped unless the {@code benchmarks}
+ * system property is set. Count of nodes can be changed with the {@code footprint.nodes} system property.
+ */
+public class FootprintTest {
+
+    private static final int NODES = Integer.getInteger("footprint.nodes", 100_000);
+
+    @Before
+    public void setUp() {
+        assumeTrue("benchmarks are disabled", Boolean.getBoolean("benchmarks"));
+    }
+
+    /**
+     * Keeps measured objects reachable until the measurement is done.
+     */
+    private static Object sink;
+
+    @Test
+    public void flat() {
+        measure("flat", NODES);
+    }
+
+    @Test
+    public void wide() {
+        measure("fanout 10", 10);
+    }
+
+    @Test
+    public void binary() {
+        measure("fanout 2", 2);
+    }
+
+    private static void measure(String shape, int fanout) {
+        for (double ratio : new double[]{0, 0.5, 1}) {
+            measure(shape, fanout, ratio, false);
+            measure(shape, fanout, ratio, true);
+        }
+    }
+
+    private static void measure(String shape, int fanout, double ratio, boolean sorted) {
+        Random random = new Random(46);
+        // allocated before the measurement, so they are not counted as the size of nodes
+        List<INode> roots = new ArrayList<>(Math.min(fanout, NODES));
+        List<INode> parents = new ArrayList<>(NODES / fanout + 1);
+        long base = usedHeap();
+        build(roots, parents, fanout, ratio, sorted, random);
+        long nodes = usedHeap() - base;
+
+        ExpandableList list = new ExpandableList();
+        list.insertAll(roots);
+        long listBytes = usedHeap() - base - nodes;
+        int visible = list.size();
+
+        // cached rows data is built lazily
+        list.getDepth(0);
+        long rowCaches = usedHeap() - base - nodes - listBytes;
+
+        // views are measured by the heap they free, so garbage of their construction is not counted
+        FilteredExpandableList filtered = new FilteredExpandableList(list, node -> true);
+        long withFiltered = usedHeap();
+        filtered.release();
+        filtered = null;
+        long filteredBytes = withFiltered - usedHeap();
+
+        TreeProjection projection = new TreeProjection(list);
+        // children first, so rows are inserted only for the visible top level nodes
+        for (int i = parents.size() - 1; i >= 0; i--) {
+            INode parent = parents.get(i);
+            if (parent.isExpanded()) {
+                projection.setExpanded(parent, true);
+            }
+        }
+        long withProjection = usedHeap();
+        projection.release();
+        projection = null;
+        long projectionBytes = withProjection - usedHeap();
+
+        double perNode = (double) nodes / NODES;
+        System.out.printf(Locale.ROOT, "footprint, %s, %s, %d nodes, %.0f%% expanded, %d visible: node=%.1f B/node, "
+                        + "list=%.1f B/node, row caches=%s B/row, filtered=%.1f B/node, projection=%.1f B/node%n",
+                sorted ? "SortedNode" : "Node", shape, NODES, ratio * 100, visible, perNode,
+                (double) listBytes / NODES, perRow(rowCaches, visible), (double) filteredBytes / NODES,
+                (double) projectionBytes / NODES);
+        sink = list;
+        sink = null;
+    }
+
+    /**
+     * Build a tree of {@link #NODES} nodes, breadth first.
+     *
+     * @param roots   top level nodes
+     * @param parents nodes with children, in order of creation
+     * @param fanout  max count of children of a parent
+     * @param ratio   probability of a parent to be expanded
+     * @param sorted  create {@link SortedNode}s instead of plain {@link Node}s
+     */
+    private static void build(List<INode> roots, List<INode> parents, int fanout, double ratio, boolean sorted,
+            Random random) {
+        List<INode> level = new ArrayList<>();
+        int count = 0;
+        for (; count < Math.min(fanout, NODES); count++) {
+            INode node = create(sorted);
+            roots.add(node);
+            level.add(node);
+        }
+        while (count < NODES) {
+            List<INode> next = new ArrayList<>();
+            for (INode parent : level) {
+                if (count == NODES) {
+                    break;
+                }
+                for (int i = 0; i < fanout && count < NODES; i++, count++) {
+                    INode child = create(sorted);
+                    parent.insert(child);
+                    next.add(child);
+                }
+                parent.setExpanded(random.nextDouble() < ratio);
+                parents.add(parent);
+            }
+            level = next;
+        }
+    }
+
+    private static INode create(boolean sorted) {
+        return sorted ? new SortedNode((lhs, rhs) -> Long.compare(lhs.getId(), rhs.getId())) : new Node();
+    }
+
+    /**
+     * @return bytes per row, or {@code -}, if there are too few rows for a meaningful value
+     */
+    private static String perRow(long bytes, int rows) {
+        return rows < 1000 ? "-" : String.format(Locale.ROOT, "%.1f", (double) bytes / rows);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = -1;
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            long current = runtime.totalMemory() - runtime.freeMemory();
+            if (Math.abs(current - used) < 1024) {
+                return current;
+            }
+            used = current;
+        }
+        return used;
+    }
+}
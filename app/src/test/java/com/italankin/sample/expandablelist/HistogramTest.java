@@ -0,0 +1,67 @@
+package com.italankin.sample.expandablelist;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HistogramTest {
+
+    @Test
+    public void buckets() {
+        Random random = new Random(1);
+        for (int i = 0; i < 10_000; i++) {
+            long value = random.nextLong() >>> (1 + random.nextInt(63));
+            int index = Histogram.indexOf(value);
+            long highest = Histogram.highestEquivalentValue(index);
+            assertTrue(value + " > " + highest, value <= highest);
+            if (index > 0) {
+                assertTrue(Histogram.highestEquivalentValue(index - 1) < value);
+            }
+        }
+        assertEquals(Long.MAX_VALUE, Histogram.highestEquivalentValue(Histogram.indexOf(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void percentiles() {
+        Histogram histogram = new Histogram();
+        Random random = new Random(2);
+        long[] values = new long[10_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(1_000_000);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        assertEquals(values.length, histogram.getCount());
+        assertEquals(values[0], histogram.getMin());
+        assertEquals(values[values.length - 1], histogram.getMax());
+        for (double percentile : new double[]{1, 50, 90, 99, 99.9}) {
+            long expected = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long actual = histogram.getValueAtPercentile(percentile);
+            assertTrue(percentile + ": " + expected + " vs " + actual,
+                    actual >= expected && actual <= expected + expected / 16 + 1);
+        }
+        assertEquals(histogram.getMax(), histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void reset() {
+        Histogram histogram = new Histogram();
+        histogram.record(5);
+        histogram.record(100);
+        assertEquals(52.5, histogram.getMean(), 0);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMin());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negative() {
+        new Histogram().record(-1);
+    }
+}
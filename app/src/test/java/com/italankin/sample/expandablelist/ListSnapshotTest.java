@@ -0,0 +1,78 @@
+package com.italankin.sample.expandablelist;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class ListSnapshotTest {
+
+    @Test
+    public void replay() {
+        List<Integer> source = new ArrayList<>(Arrays.asList(0, 1, 2, 3, 4, 5));
+        ListSnapshot<Integer> snapshot = new ListSnapshot<>(source);
+        source.addAll(2, Arrays.asList(10, 11));
+        snapshot.onInserted(2, 2);
+        // moves the inserted items and their neighbour to the end
+        List<Integer> moved = new ArrayList<>(source.subList(1, 4));
+        source.subList(1, 4).clear();
+        source.addAll(5, moved);
+        snapshot.onRangeMoved(1, 5, 3);
+        source.remove(0);
+        snapshot.onRemoved(0, 1);
+        source.set(0, 20);
+        snapshot.onChanged(0, 1, null);
+        snapshot.sync();
+        assertEquals(Arrays.asList(20, 3, 4, 5, 1, 10, 11), source);
+        assertEquals(source, snapshot);
+    }
+
+    @Test
+    public void random() {
+        Random random = new Random(36);
+        List<Integer> source = new ArrayList<>();
+        ListSnapshot<Integer> snapshot = new ListSnapshot<>(source);
+        int next = 0;
+        for (int batch = 0; batch < 2000; batch++) {
+            for (int i = random.nextInt(10); i >= 0; i--) {
+                int size = source.size();
+                int action = size == 0 ? 0 : random.nextInt(4);
+                if (action == 0) {
+                    int position = random.nextInt(size + 1);
+                    int count = 1 + random.nextInt(4);
+                    for (int j = 0; j < count; j++) {
+                        source.add(position + j, next++);
+                    }
+                    snapshot.onInserted(position, count);
+                } else if (action == 1) {
+                    int position = random.nextInt(size);
+                    int count = 1 + random.nextInt(Math.min(4, size - position));
+                    source.subList(position, position + count).clear();
+                    snapshot.onRemoved(position, count);
+                } else if (action == 2) {
+                    int from = random.nextInt(size);
+                    int count = 1 + random.nextInt(Math.min(4, size - from));
+                    int to = random.nextInt(size - count + 1);
+                    List<Integer> block = new ArrayList<>(source.subList(from, from + count));
+                    source.subList(from, from + count).clear();
+                    source.addAll(to, block);
+                    if (count == 1) {
+                        snapshot.onMoved(from, to);
+                    } else {
+                        snapshot.onRangeMoved(from, to, count);
+                    }
+                } else {
+                    int position = random.nextInt(size);
+                    source.set(position, next++);
+                    snapshot.onChanged(position, 1, null);
+                }
+            }
+            snapshot.sync();
+            assertEquals("batch=" + batch, source, snapshot);
+        }
+    }
+}
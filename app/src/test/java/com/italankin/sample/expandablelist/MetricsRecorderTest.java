@@ -0,0 +1,54 @@
+package com.italankin.sample.expandablelist;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsRecorderTest {
+
+    @Test
+    public void operations() {
+        ExpandableList list = new ListBuilder()
+                .add(new NodeBuilder(false)
+                        .add(3))
+                .add(new NodeBuilder(false)
+                        .add(new NodeBuilder(true)
+                                .add(2)))
+                .build();
+        MetricsRecorder recorder = new MetricsRecorder();
+        list.setMetrics(recorder);
+
+        list.expand(list.getChild(0));
+        list.expand(list.getChild(1));
+        list.collapse(list.getChild(0));
+        INode node = new Node();
+        list.getChild(1).insert(node);
+        list.getChild(1).delete(node);
+        list.move(list.getChild(1), list, 0);
+        list.invalidate();
+
+        Histogram expand = recorder.getRows(ListMetrics.Operation.EXPAND);
+        assertEquals(2, expand.getCount());
+        assertEquals(3 + 3, expand.getSum());
+        assertEquals(3, recorder.getRows(ListMetrics.Operation.COLLAPSE).getSum());
+        assertEquals(1, recorder.getRows(ListMetrics.Operation.INSERT).getSum());
+        assertEquals(1, recorder.getRows(ListMetrics.Operation.DELETE).getSum());
+        assertEquals(4, recorder.getRows(ListMetrics.Operation.MOVE).getSum());
+        assertEquals(5, recorder.getRows(ListMetrics.Operation.INVALIDATE).getSum());
+        assertEquals(2, recorder.getDurations(ListMetrics.Operation.EXPAND).getCount());
+        assertEquals(8, recorder.getTreeSize());
+        assertEquals(2, recorder.getMaxDepth());
+        assertTrue(recorder.getAllocatedBytes() > 0);
+
+        String dump = recorder.dump();
+        assertTrue(dump, dump.contains("EXPAND"));
+        assertTrue(dump, dump.contains("tree size: 8, max depth: 2"));
+
+        recorder.reset();
+        assertEquals(0, recorder.getRows(ListMetrics.Operation.EXPAND).getCount());
+        list.setMetrics(null);
+        list.collapse(list.getChild(0));
+        assertEquals(0, recorder.getRows(ListMetrics.Operation.COLLAPSE).getCount());
+    }
+}
@@ -0,0 +1,343 @@
+package com.italankin.sample.expandablelist;
+
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class NodeTest {
+
+    @Test
+    public void subtreeHash_equalTrees() {
+        assertEquals(tree().getSubtreeHash(), tree().getSubtreeHash());
+        Node expanded = tree();
+        expanded.setExpanded(true);
+        assertEquals(tree().getSubtreeHash(), expanded.getSubtreeHash());
+    }
+
+    @Test
+    public void subtreeHash_structuralChanges() {
+        Node node = tree();
+        long hash = node.getSubtreeHash();
+        INode inner = node.getChildren().get(1);
+
+        ValueNode added = new ValueNode(7);
+        inner.insert(added);
+        long inserted = node.getSubtreeHash();
+        assertNotEquals(hash, inserted);
+
+        inner.delete(added);
+        assertEquals(hash, node.getSubtreeHash());
+
+        node.sortChildren((o1, o2) -> Integer.compare(((ValueNode) o2).value, ((ValueNode) o1).value));
+        assertNotEquals(hash, node.getSubtreeHash());
+    }
+
+    @Test
+    public void subtreeHash_contentChange() {
+        ValueNode node = tree();
+        long hash = node.getSubtreeHash();
+        ValueNode leaf = (ValueNode) node.getChildren().get(1).getChildren().get(0);
+        leaf.value = 100;
+        // not notified yet
+        assertEquals(hash, node.getSubtreeHash());
+        leaf.notifyContentChanged();
+        assertNotEquals(hash, node.getSubtreeHash());
+        leaf.value = 3;
+        leaf.notifyContentChanged();
+        assertEquals(hash, node.getSubtreeHash());
+    }
+
+    @Test
+    public void subtreeHash_cached() {
+        ValueNode node = tree();
+        node.getSubtreeHash();
+        int computed = ValueNode.computed;
+        node.getSubtreeHash();
+        assertEquals(computed, ValueNode.computed);
+        // only the path to the changed node is computed again
+        ((Node) node.getChildren().get(1)).notifyContentChanged();
+        node.getSubtreeHash();
+        assertEquals(computed + 2, ValueNode.computed);
+    }
+
+    @Test
+    public void childrenView() {
+        Node node = new Node();
+        // the view of a leaf shows children inserted later
+        List<? extends INode> children = node.getChildren();
+        assertEquals(0, children.size());
+        Node child = new Node();
+        node.insert(child);
+        assertSame(children, node.getChildren());
+        node.insert(new Node());
+        assertEquals(2, children.size());
+        assertSame(child, children.get(0));
+    }
+
+    @Test
+    public void observers() {
+        Node node = new Node();
+        CountingObserver first = new CountingObserver();
+        CountingObserver second = new CountingObserver();
+        node.addObserver(first);
+        node.addObserver(second);
+        node.addObserver(first);
+        node.insert(new Node());
+        assertEquals(1, first.events);
+        assertEquals(1, second.events);
+
+        node.removeObserver(first);
+        node.setExpanded(true);
+        assertEquals(1, first.events);
+        assertEquals(2, second.events);
+
+        node.removeObserver(second);
+        node.setExpanded(false);
+        assertEquals(2, second.events);
+    }
+
+    @Test
+    public void weakObserver() throws InterruptedException {
+        Node node = new Node();
+        CountingObserver observer = new CountingObserver();
+        node.addWeakObserver(observer);
+        node.setExpanded(true);
+        assertEquals(1, observer.events);
+
+        WeakReference<CountingObserver> reference = new WeakReference<>(observer);
+        observer = null;
+        for (int i = 0; i < 50 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull("node must not retain weak observers", reference.get());
+        // collected observer is removed
+        node.setExpanded(false);
+    }
+
+    @Test
+    public void weakObserver_remove() {
+        Node node = new Node();
+        CountingObserver observer = new CountingObserver();
+        node.addWeakObserver(observer);
+        node.removeObserver(observer);
+        node.setExpanded(true);
+        assertEquals(0, observer.events);
+    }
+
+    private static ValueNode tree() {
+        ValueNode root = new ValueNode(0);
+        root.insert(new ValueNode(1));
+        ValueNode inner = new ValueNode(2);
+        inner.insert(new ValueNode(3));
+        inner.insert(new ValueNode(4));
+        root.insert(inner);
+        return root;
+    }
+
+    @Test
+    public void insertAll() {
+        Node root = new Node();
+        Node parent = new Node();
+        root.insert(parent);
+        CountingObserver counting = new CountingObserver();
+        List<List<? extends INode>> batches = new ArrayList<>();
+        root.addObserver(counting);
+        root.addObserver(new CountingObserver() {
+            @Override
+            public void onInsertedAll(List<? extends INode> children) {
+                batches.add(children);
+            }
+        });
+        List<INode> nodes = Arrays.asList(new Node(), new Node(), new Node());
+        parent.insert(new Node());
+        parent.insertAll(1, nodes);
+        assertEquals(Collections.singletonList(nodes), batches);
+        // observer without support of batches receives every child separately
+        assertEquals(4, counting.events);
+        assertEquals(4, parent.getChildren().size());
+        for (INode node : nodes) {
+            assertSame(parent, node.getParent());
+        }
+        assertEquals(0, parent.insertAll(Collections.emptyList()));
+        assertEquals(1, batches.size());
+    }
+
+    @Test
+    public void deleteRange() {
+        Node root = new Node();
+        Node parent = new Node();
+        root.insert(parent);
+        for (int i = 0; i < 5; i++) {
+            parent.insert(new Node());
+        }
+        CountingObserver counting = new CountingObserver();
+        List<List<? extends INode>> batches = new ArrayList<>();
+        root.addObserver(counting);
+        root.addObserver(new CountingObserver() {
+            @Override
+            public void onDeletedAll(INode oldParent, List<? extends INode> children) {
+                assertSame(parent, oldParent);
+                batches.add(children);
+            }
+        });
+        List<INode> deleted = new ArrayList<>(parent.getChildren().subList(1, 4));
+        assertEquals(3, parent.deleteRange(1, 4));
+        assertEquals(Collections.singletonList(deleted), batches);
+        assertEquals(3, counting.events);
+        assertEquals(2, parent.getChildren().size());
+        parent.clear();
+        assertEquals(2, batches.size());
+        assertEquals(5, counting.events);
+        assertEquals(0, parent.getChildren().size());
+    }
+
+    @Test
+    public void insertAll_sorted() {
+        SortedNode parent = new SortedNode((lhs, rhs) -> Long.compare(rhs.getId(), lhs.getId()));
+        INode first = new Node();
+        INode second = new Node();
+        assertEquals(2, parent.insertAll(Arrays.asList(first, second)));
+        assertEquals(Arrays.asList(second, first), parent.getChildren());
+    }
+
+    @Test
+    public void subtreeSpliterator() {
+        ExpandableList list = ExpandableListTest.randomList(new Random(47), 5);
+        Node node = (Node) list.getChild(0);
+        List<INode> expected = new ArrayList<>();
+        expected.add(node);
+        collectAll(node, expected);
+
+        assertEquals(expected, StreamSupport.stream(node.subtreeSpliterator(), false).collect(Collectors.toList()));
+        assertEquals(expected, StreamSupport.stream(node.subtreeSpliterator(), true).collect(Collectors.toList()));
+        List<INode> split = new ArrayList<>();
+        splitAll(node.subtreeSpliterator(), split);
+        assertEquals(expected, split);
+
+        Node leaf = new Node();
+        assertEquals(Collections.singletonList(leaf),
+                StreamSupport.stream(leaf.subtreeSpliterator(), true).collect(Collectors.toList()));
+    }
+
+    /**
+     * Split {@code spliterator} as far as possible and add nodes of the parts in order.
+     */
+    static void splitAll(Spliterator<INode> spliterator, List<INode> target) {
+        Spliterator<INode> prefix = spliterator.trySplit();
+        if (prefix != null) {
+            splitAll(prefix, target);
+            splitAll(spliterator, target);
+        } else {
+            spliterator.forEachRemaining(target::add);
+        }
+    }
+
+    static void collectAll(INode node, List<INode> target) {
+        for (INode child : node.getChildren()) {
+            target.add(child);
+            collectAll(child, target);
+        }
+    }
+
+    static class ValueNode extends Node {
+        static int computed = 0;
+
+        int value;
+
+        ValueNode(int value) {
+            this.value = value;
+        }
+
+        @Override
+        protected long contentHash() {
+            computed++;
+            return value;
+        }
+    }
+
+    @Test
+    public void move_singleEventForCommonAncestors() {
+        Node from = new Node();
+        Node to = new Node();
+        Node common = new Node();
+        common.insert(from);
+        common.insert(to);
+        ExpandableList list = new ExpandableList();
+        list.insert(common);
+        INode moved = new Node();
+        from.insert(moved);
+        List<String> events = new ArrayList<>();
+        INode.Observer recorder = new INode.Observer() {
+            @Override
+            public void onInserted(INode child) {
+                events.add("inserted");
+            }
+
+            @Override
+            public void onChanged(INode node) {
+                events.add("changed");
+            }
+
+            @Override
+            public void onDeleted(INode oldParent, INode child) {
+                events.add("deleted");
+            }
+
+            @Override
+            public void onReparented(INode oldParent, INode child) {
+                events.add("reparented from " + (oldParent == from ? "from" : "to"));
+            }
+        };
+        CountingObserver fromObserver = new CountingObserver();
+        CountingObserver toObserver = new CountingObserver();
+        from.addObserver(fromObserver);
+        to.addObserver(toObserver);
+        common.addObserver(recorder);
+        list.addObserver(recorder);
+
+        list.move(moved, to);
+        assertEquals("[reparented from from, reparented from from]", events.toString());
+        assertEquals(1, fromObserver.events);
+        assertEquals(1, toObserver.events);
+
+        // observers without onReparented receive deletion and insertion
+        CountingObserver listObserver = new CountingObserver();
+        list.addObserver(listObserver);
+        list.move(moved, from, 0);
+        assertEquals(2, listObserver.events);
+        assertSame(moved, list.findById(moved.getId()));
+    }
+
+    static class CountingObserver implements INode.Observer {
+        int events = 0;
+
+        @Override
+        public void onInserted(INode child) {
+            events++;
+        }
+
+        @Override
+        public void onChanged(INode node) {
+            events++;
+        }
+
+        @Override
+        public void onDeleted(INode oldParent, INode child) {
+            events++;
+        }
+    }
+}
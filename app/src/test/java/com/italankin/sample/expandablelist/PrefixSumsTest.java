@@ -0,0 +1,31 @@
+package com.italankin.sample.expandablelist;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class PrefixSumsTest {
+
+    @Test
+    public void random() {
+        Random random = new Random(7);
+        int size = 37;
+        int[] values = new int[size];
+        PrefixSums sums = new PrefixSums(size);
+        for (int i = 0; i < 1000; i++) {
+            int index = random.nextInt(size);
+            int delta = random.nextInt(11) - 5;
+            values[index] += delta;
+            sums.add(index, delta);
+            int expected = 0;
+            for (int j = 0; j <= size; j++) {
+                assertEquals(expected, sums.sumBefore(j));
+                if (j < size) {
+                    expected += values[j];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.italankin.sample.expandablelist;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Applies received events to a copy of the list. Inserted items are unknown at the time of event,
+ * so {@code null}s are inserted in their place.
+ */
+class RecordingCallback implements ListUpdateCallback {
+    final List<INode> items;
+    final List<String> events = new ArrayList<>();
+    final List<Object> payloads = new ArrayList<>();
+
+    RecordingCallback(List<INode> initial) {
+        items = new ArrayList<>(initial);
+    }
+
+    @Override
+    public void onInserted(int position, int count) {
+        events.add("inserted(" + position + ", " + count + ")");
+        for (int i = 0; i < count; i++) {
+            items.add(position, null);
+        }
+    }
+
+    @Override
+    public void onRemoved(int position, int count) {
+        events.add("removed(" + position + ", " + count + ")");
+        items.subList(position, position + count).clear();
+    }
+
+    @Override
+    public void onMoved(int fromPosition, int toPosition) {
+        events.add("moved(" + fromPosition + ", " + toPosition + ")");
+        items.add(toPosition, items.remove(fromPosition));
+    }
+
+    @Override
+    public void onChanged(int position, int count, Object payload) {
+        events.add("changed(" + position + ", " + count + ")");
+        payloads.add(payload);
+        if (position < 0 || position + count > items.size()) {
+            throw new IndexOutOfBoundsException("changed(" + position + ", " + count + ")");
+        }
+    }
+
+    /**
+     * Check if the received events transform initial list into {@code actual}.
+     *
+     * @param actual actual content of the list
+     */
+    void verify(List<INode> actual) {
+        assertEquals(events.toString(), actual.size(), items.size());
+        for (int i = 0; i < actual.size(); i++) {
+            if (items.get(i) != null) {
+                assertSame(events.toString(), actual.get(i), items.get(i));
+            }
+        }
+        items.clear();
+        items.addAll(actual);
+        events.clear();
+        payloads.clear();
+    }
+}
@@ -0,0 +1,98 @@
+package com.italankin.sample.expandablelist;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SearchIndexTest {
+
+    private ExpandableList list;
+    private TextNode apple, apricot, banana, pineapple;
+    private SearchIndex index;
+
+    @Before
+    public void setUp() {
+        apple = new TextNode("Apple");
+        apricot = new TextNode("Apricot");
+        banana = new TextNode("Banana");
+        pineapple = new TextNode("Pineapple");
+        TextNode fruits = new TextNode(null);
+        fruits.insert(apple);
+        fruits.insert(apricot);
+        banana.insert(pineapple);
+        list = new ExpandableList(Arrays.asList(fruits, banana));
+        index = new SearchIndex(list, node -> ((TextNode) node).text);
+    }
+
+    @Test
+    public void find_short() {
+        assertEquals(4, index.size());
+        assertFound(index.find("ap"), apple, apricot, pineapple);
+        assertFound(index.find("A"), apple, apricot, banana, pineapple);
+        assertFound(index.find("x"));
+        assertFound(index.find(""));
+    }
+
+    @Test
+    public void find_long() {
+        assertFound(index.find("APPLE"), apple, pineapple);
+        assertFound(index.find("nana"), banana);
+        assertFound(index.find("apples"));
+    }
+
+    @Test
+    public void insertAndDelete() {
+        TextNode grape = new TextNode("Grape");
+        TextNode grapefruit = new TextNode("Grapefruit");
+        grape.insert(grapefruit);
+        list.insert(grape);
+        assertFound(index.find("grape"), grape, grapefruit);
+
+        list.delete(banana);
+        assertFound(index.find("apple"), apple);
+        assertFound(index.find("ban"));
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    public void update() {
+        apple.text = "Mango";
+        index.update(apple);
+        assertFound(index.find("apple"), pineapple);
+        assertFound(index.find("mango"), apple);
+    }
+
+    @Test
+    public void release() {
+        index.release();
+        list.insert(new TextNode("Grape"));
+        assertFound(index.find("grape"));
+    }
+
+    @Test
+    public void revealResult() {
+        List<INode> found = index.find("pineapple");
+        assertEquals(1, found.size());
+        assertEquals(2, list.revealPath(found.get(0)));
+        assertTrue(banana.isExpanded());
+    }
+
+    private static void assertFound(List<INode> actual, INode... expected) {
+        assertEquals(new HashSet<>(Arrays.asList(expected)), new HashSet<>(actual));
+        assertEquals(expected.length, actual.size());
+    }
+
+    static class TextNode extends Node {
+        String text;
+
+        TextNode(String text) {
+            this.text = text;
+        }
+    }
+}
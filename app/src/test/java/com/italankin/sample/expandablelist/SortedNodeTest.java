@@ -0,0 +1,242 @@
+package com.italankin.sample.expandablelist;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SortedNodeTest {
+
+    private static final Comparator<INode> BY_KEY = (o1, o2) -> Integer.compare(key(o1), key(o2));
+
+    @Test
+    public void insert_sorted() {
+        SortedNode node = new SortedNode(BY_KEY);
+        for (int key : new int[]{5, 1, 3, 3, 9, 0}) {
+            node.insert(new KeyNode(key));
+        }
+        assertEquals("[0, 1, 3, 3, 5, 9]", node.getChildren().toString());
+    }
+
+    @Test
+    public void insert_equalKeysKeepOrder() {
+        SortedNode node = new SortedNode(BY_KEY);
+        KeyNode first = new KeyNode(1);
+        KeyNode second = new KeyNode(1);
+        node.insert(second);
+        node.insert(new KeyNode(0));
+        node.insert(first);
+        assertEquals(Arrays.asList(1, 2), Arrays.asList(node.indexOf(second), node.indexOf(first)));
+    }
+
+    @SuppressWarnings("deprecation")
+    @Test(expected = UnsupportedOperationException.class)
+    public void insert_index() {
+        new SortedNode(BY_KEY).insert(0, new Node());
+    }
+
+    @Test
+    public void reposition() {
+        SortedNode node = new SortedNode(BY_KEY);
+        ExpandableList list = new ExpandableList(Collections.singletonList(node));
+        node.setExpanded(true);
+        KeyNode changed = new KeyNode(2);
+        node.insert(new KeyNode(1));
+        node.insert(changed);
+        node.insert(new KeyNode(3));
+        MoveObserver observer = new MoveObserver();
+        list.addObserver(observer);
+
+        changed.key = 4;
+        assertEquals(2, node.reposition(changed));
+        assertEquals("[1, 3, 4]", node.getChildren().toString());
+        assertEquals("[1 -> 2]", observer.moves.toString());
+        assertEquals(Arrays.asList(node, node.getChildren().get(0), node.getChildren().get(1), changed), new ArrayList<>(list));
+
+        changed.key = 3;
+        assertEquals(2, node.reposition(changed));
+        assertEquals(1, observer.moves.size());
+    }
+
+    @Test
+    public void reposition_stillOrdered() {
+        SortedNode node = new SortedNode(BY_KEY);
+        KeyNode changed = new KeyNode(0);
+        node.insert(new KeyNode(0));
+        node.insert(changed);
+        node.insert(new KeyNode(2));
+        node.insert(new KeyNode(5));
+        MoveObserver observer = new MoveObserver();
+        node.addObserver(observer);
+
+        changed.key = 1;
+        assertEquals(1, node.reposition(changed));
+        // equal to the next child, but it is not moved after it
+        changed.key = 2;
+        assertEquals(1, node.reposition(changed));
+        assertEquals(0, observer.moves.size());
+        assertEquals("[0, 2, 2, 5]", node.getChildren().toString());
+    }
+
+    @Test
+    public void reposition_comparatorThrows() {
+        boolean[] fail = {false};
+        SortedNode node = new SortedNode((o1, o2) -> {
+            if (fail[0]) {
+                throw new IllegalStateException();
+            }
+            return BY_KEY.compare(o1, o2);
+        });
+        KeyNode changed = new KeyNode(1);
+        node.insert(changed);
+        node.insert(new KeyNode(2));
+        changed.key = 3;
+        fail[0] = true;
+        try {
+            node.reposition(changed);
+            fail();
+        } catch (IllegalStateException ignored) {
+        }
+        assertEquals(0, node.indexOf(changed));
+        assertSame(node, changed.getParent());
+    }
+
+    @Test
+    public void reposition_random() {
+        Random random = new Random(29);
+        SortedNode node = new SortedNode(BY_KEY);
+        for (int i = 0; i < 50; i++) {
+            node.insert(new KeyNode(random.nextInt(20)));
+        }
+        for (int i = 0; i < 1000; i++) {
+            KeyNode changed = (KeyNode) node.getChildren().get(random.nextInt(50));
+            changed.key = random.nextInt(20);
+            int index = node.reposition(changed);
+            assertSame(changed, node.getChildren().get(index));
+            for (int j = 1; j < 50; j++) {
+                assertTrue(key(node.getChildren().get(j - 1)) <= key(node.getChildren().get(j)));
+            }
+        }
+    }
+
+    @Test
+    public void sortChildren_minimalMoves() {
+        Node node = new Node();
+        for (int key : new int[]{9, 1, 2, 3, 4, 5}) {
+            node.insert(new KeyNode(key));
+        }
+        MoveObserver observer = new MoveObserver();
+        node.addObserver(observer);
+        node.sortChildren(BY_KEY);
+        assertEquals("[1, 2, 3, 4, 5, 9]", node.getChildren().toString());
+        assertEquals("[0 -> 5]", observer.moves.toString());
+
+        observer.moves.clear();
+        node.sortChildren(BY_KEY);
+        assertEquals(0, observer.moves.size());
+    }
+
+    @Test
+    public void sortChildren_random() {
+        Random random = new Random(29);
+        for (int run = 0; run < 200; run++) {
+            Node node = new Node();
+            for (int i = random.nextInt(40); i >= 0; i--) {
+                node.insert(new KeyNode(random.nextInt(30)));
+            }
+            List<INode> replayed = new ArrayList<>(node.getChildren());
+            node.addObserver(new MoveObserver() {
+                @Override
+                public void onMoved(INode child, int fromIndex, int toIndex) {
+                    assertSame(child, replayed.get(fromIndex));
+                    replayed.add(toIndex, replayed.remove(fromIndex));
+                }
+            });
+            List<INode> expected = new ArrayList<>(node.getChildren());
+            Collections.sort(expected, BY_KEY);
+            node.sortChildren(BY_KEY);
+            assertEquals(expected, node.getChildren());
+            assertEquals(expected, replayed);
+        }
+    }
+
+    @Test
+    public void sortChildren_updatesList() {
+        ExpandableList list = new ExpandableList();
+        int[] keys = {4, 7, 1, 8, 0, 3, 6, 2, 5};
+        for (int key : keys) {
+            KeyNode node = new KeyNode(key);
+            for (int i = 0; i < key % 3; i++) {
+                node.insert(new KeyNode(key * 10 + i));
+            }
+            list.insert(node);
+        }
+        list.getChild(0).setExpanded(true);
+        list.getChild(3).setExpanded(true);
+        list.getChild(7).setExpanded(true);
+        FilteredExpandableList filtered = new FilteredExpandableList(list, node -> key(node) % 2 == 0);
+        RecordingCallback callback = new RecordingCallback(new ArrayList<>(filtered));
+        filtered.setUpdateCallback(callback);
+
+        list.sortChildren(BY_KEY);
+
+        List<INode> expected = new ArrayList<>();
+        for (INode child : list.getChildren()) {
+            expected.add(child);
+            if (child.isExpanded()) {
+                expected.addAll(child.getChildren());
+            }
+        }
+        assertEquals(expected, new ArrayList<>(list));
+        assertEquals("[0, 1, 2, 20, 21, 3, 4, 40, 5, 6, 7, 8, 80, 81]", expected.toString());
+        callback.verify(filtered);
+        assertEquals("[0, 1, 2, 20, 4, 40, 5, 6, 7, 8, 80]", filtered.toString());
+    }
+
+    static int key(INode node) {
+        return ((KeyNode) node).key;
+    }
+
+    static class KeyNode extends Node {
+        int key;
+
+        KeyNode(int key) {
+            this.key = key;
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(key);
+        }
+    }
+
+    static class MoveObserver implements INode.Observer {
+        final List<String> moves = new ArrayList<>();
+
+        @Override
+        public void onInserted(INode child) {
+        }
+
+        @Override
+        public void onChanged(INode node) {
+        }
+
+        @Override
+        public void onDeleted(INode oldParent, INode child) {
+        }
+
+        @Override
+        public void onMoved(INode child, int fromIndex, int toIndex) {
+            moves.add(fromIndex + " -> " + toIndex);
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package com.italankin.sample.expandablelist;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Applies random operations to {@link ExpandableList} and compares it against a simple reference flattener
+ * after each step, and measures throughput of mixed operations on trees of growing size.
+ * <br>
+ * Random trees contain {@link SortedNode} parents, and observers are registered on random members, so events
+ * bubbled to them are checked too.
+ * <br>
+ * Defaults are small enough for a regular test run, larger runs can be configured with system properties:
+ * <ul>
+ * <li>{@code benchmarks} - run the throughput measurement, it only reports numbers and is skipped by default</li>
+ * <li>{@code stress.seed} - seed of the random operations</li>
+ * <li>{@code stress.ops} - count of operations, e.g. {@code 5000000}</li>
+ * <li>{@code stress.maxSize} - size of the largest tree for throughput measurement, e.g. {@code 10000000}</li>
+ * </ul>
+ */
+public class StressTest {
+
+    private static final long SEED = Long.getLong("stress.seed", 45);
+    private static final int OPS = Integer.getInteger("stress.ops", 50_000);
+    private static final int MAX_SIZE = Integer.getInteger("stress.maxSize", 100_000);
+    /**
+     * Tree is trimmed, when it grows larger, so the reference check stays cheap.
+     */
+    private static final int MAX_NODES = 400;
+    private static final int MAX_OBSERVERS = 16;
+
+    private static final Comparator<INode> BY_ID = (lhs, rhs) -> Long.compare(lhs.getId(), rhs.getId());
+    private static final Comparator<INode> BY_ID_DESC = (lhs, rhs) -> Long.compare(rhs.getId(), lhs.getId());
+
+    @Test
+    public void randomOperations() {
+        Random random = new Random(SEED);
+        ExpandableList list = ExpandableListTest.randomList(random, 3);
+        list.invalidate();
+        RecordingCallback callback = ExpandableListTest.record(list);
+        // matches every node, so it must be equal to the list
+        FilteredExpandableList filtered = new FilteredExpandableList(list, node -> true);
+        List<INode> members = new ArrayList<>();
+        List<SubtreeObserver> observers = new ArrayList<>();
+        for (int step = 0; step < OPS; step++) {
+            members.clear();
+            collect(list, members);
+            if (observers.size() < MAX_OBSERVERS && !members.isEmpty() && random.nextInt(10) == 0) {
+                SubtreeObserver observer = new SubtreeObserver(members.get(random.nextInt(members.size())));
+                observer.node.addObserver(observer);
+                observers.add(observer);
+            }
+            String operation = apply(list, members, random);
+            String message = "seed=" + SEED + ", step=" + step + ", " + operation;
+            check(list, callback, message);
+            assertEquals(message, new ArrayList<>(list), new ArrayList<>(filtered));
+            checkObservers(list, observers, message);
+        }
+    }
+
+    /**
+     * Measures throughput of expand, collapse, insert and delete on trees of 10³ nodes and up to
+     * {@link #MAX_SIZE}. Throughput is only reported, correctness is verified once per size.
+     */
+    @Test
+    public void scaling() {
+        assumeTrue("benchmarks are disabled", Boolean.getBoolean("benchmarks"));
+        Random random = new Random(SEED);
+        for (int size = 1_000; size <= MAX_SIZE; size *= 10) {
+            ExpandableList list = new ExpandableList();
+            List<INode> parents = new ArrayList<>();
+            build(list, size, random, parents);
+            int ops = 1_000;
+            // warm up
+            mixedOperations(list, parents, random, ops);
+            long start = System.nanoTime();
+            mixedOperations(list, parents, random, ops);
+            long elapsed = System.nanoTime() - start;
+            assertEquals(ExpandableListTest.flatten(list), new ArrayList<>(list));
+            System.out.printf("stress, %d nodes (%d visible): %.0f ops/s, %.2f us/op%n",
+                    list.absoluteSize(), list.size(), ops * 1e9 / elapsed, elapsed / 1e3 / ops);
+        }
+    }
+
+    /**
+     * Apply a random operation to the {@code list}.
+     *
+     * @return description of the operation
+     */
+    private static String apply(ExpandableList list, List<INode> members, Random random) {
+        int kind = random.nextInt(members.size() > MAX_NODES ? 2 : 10);
+        INode node = members.isEmpty() ? null : members.get(random.nextInt(members.size()));
+        if (node == null && kind != 4) {
+            kind = 2;
+        }
+        switch (kind) {
+            case 0:
+            case 1: {
+                node.getParent().delete(node);
+                return "delete " + node.getId();
+            }
+            case 2:
+            case 3: {
+                INode parent = node == null || random.nextInt(4) == 0 ? list : node;
+                Node child = subtree(random, random.nextInt(3));
+                if (parent instanceof SortedNode) {
+                    parent.insert(child);
+                } else {
+                    parent.insert(random.nextInt(parent.getChildren().size() + 1), child);
+                }
+                return "insert " + child.getId() + " into " + parent.getId();
+            }
+            case 4: {
+                List<INode> batch = new ArrayList<>();
+                for (int i = random.nextInt(4); i >= 0; i--) {
+                    batch.add(subtree(random, random.nextInt(2)));
+                }
+                Node parent = node == null || random.nextBoolean() ? list : (Node) node;
+                if (parent instanceof SortedNode) {
+                    return "insertAll " + batch.size() + " into " + parent.getId() + " = "
+                            + parent.insertAll(batch);
+                }
+                int index = random.nextInt(parent.getChildren().size() + 1);
+                return "insertAll " + batch.size() + " into " + parent.getId() + "[" + index + "] = "
+                        + parent.insertAll(index, batch);
+            }
+            case 5:
+                return "expand " + node.getId() + " = " + list.expand(node);
+            case 6:
+                return "collapse " + node.getId() + " = " + list.collapse(node);
+            case 7: {
+                INode newParent = list;
+                if (random.nextBoolean()) {
+                    INode candidate = members.get(random.nextInt(members.size()));
+                    if (!isInSubtree(candidate, node)) {
+                        newParent = candidate;
+                    }
+                }
+                int size = newParent.getChildren().size() - (node.getParent() == newParent ? 1 : 0);
+                int index = random.nextInt(size + 1);
+                return "move " + node.getId() + " to " + newParent.getId() + "[" + index + "] = "
+                        + list.move(node, newParent, index);
+            }
+            case 8: {
+                switch (random.nextInt(5)) {
+                    case 0:
+                        if (node instanceof SortedNode) {
+                            ((SortedNode) node).setComparator(random.nextBoolean() ? BY_ID : BY_ID_DESC);
+                            return "setComparator " + node.getId();
+                        }
+                        ((Node) node).sortChildren(BY_ID);
+                        return "sortChildren " + node.getId();
+                    case 1:
+                        ((Node) node).clear();
+                        return "clear " + node.getId();
+                    case 2: {
+                        Node parent = (Node) node.getParent();
+                        int size = parent.getChildren().size();
+                        int from = random.nextInt(size + 1);
+                        int to = from + random.nextInt(size - from + 1);
+                        return "deleteRange " + parent.getId() + "[" + from + ", " + to + ") = "
+                                + parent.deleteRange(from, to);
+                    }
+                    default:
+                        List<INode> nodes = new ArrayList<>(members);
+                        Collections.shuffle(nodes, random);
+                        for (INode n : nodes.subList(0, Math.min(5, nodes.size()))) {
+                            n.setExpanded(!n.isExpanded());
+                        }
+                        return "toggle 5";
+                }
+            }
+            default: {
+                switch (random.nextInt(3)) {
+                    case 0:
+                        list.setExpandedDeep(random.nextBoolean());
+                        return "setExpandedDeep";
+                    case 1:
+                        list.setExpanded(random.nextBoolean());
+                        return "setExpanded";
+                    default:
+                        return "revealPath " + node.getId() + " = " + list.revealPath(node);
+                }
+            }
+        }
+    }
+
+    private static void check(ExpandableList list, RecordingCallback callback, String message) {
+        List<INode> expected = ExpandableListTest.flatten(list);
+        List<INode> actual = new ArrayList<>(list);
+        if (!expected.equals(actual)) {
+            fail(message + "\nexpected: " + expected + "\nactual: " + actual);
+        }
+        callback.verify(actual);
+        List<INode> members = new ArrayList<>();
+        collect(list, members);
+        for (INode member : members) {
+            if (member instanceof SortedNode) {
+                List<INode> children = new ArrayList<>(member.getChildren());
+                children.sort(((SortedNode) member).getComparator());
+                assertEquals(message, children, member.getChildren());
+            }
+        }
+        for (int i = 0, size = actual.size(); i < size; i++) {
+            INode node = actual.get(i);
+            assertSame(message, node, list.findById(node.getId()));
+            INode parent = node.getParent();
+            assertEquals(message, parent == list ? -1 : list.indexOf(parent), list.getParentPosition(i));
+        }
+    }
+
+    /**
+     * Check, that observers have seen every change of their subtrees, and drop observers of deleted nodes.
+     */
+    private static void checkObservers(ExpandableList list, List<SubtreeObserver> observers, String message) {
+        for (int i = observers.size() - 1; i >= 0; i--) {
+            SubtreeObserver observer = observers.get(i);
+            if (list.findById(observer.node.getId()) != observer.node) {
+                observer.node.removeObserver(observer);
+                observers.remove(i);
+                continue;
+            }
+            assertEquals(message + ", observer of " + observer.node.getId(),
+                    SubtreeSpliterator.absoluteSize(observer.node), observer.size);
+        }
+    }
+
+    /**
+     * Expand, collapse, insert a leaf and delete the previously inserted leaf, in turn.
+     */
+    private static void mixedOperations(ExpandableList list, List<INode> parents, Random random, int count) {
+        INode inserted = null;
+        for (int i = 0; i < count; i++) {
+            INode parent = parents.get(random.nextInt(parents.size()));
+            switch (i % 4) {
+                case 0:
+                    list.expand(parent);
+                    break;
+                case 1:
+                    list.collapse(parent);
+                    break;
+                case 2:
+                    inserted = new Node();
+                    parent.insert(inserted);
+                    break;
+                default:
+                    inserted.getParent().delete(inserted);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Build a tree of {@code size} nodes with 10 children per parent, with random expanded state.
+     */
+    private static void build(ExpandableList list, int size, Random random, List<INode> parents) {
+        List<INode> level = new ArrayList<>();
+        level.add(list);
+        int count = 0;
+        while (count < size) {
+            List<INode> next = new ArrayList<>();
+            for (INode parent : level) {
+                for (int i = 0; i < 10 && count < size; i++, count++) {
+                    Node child = new Node();
+                    child.setExpanded(random.nextInt(3) > 0);
+                    parent.insert(child);
+                    next.add(child);
+                }
+                if (parent != list) {
+                    parents.add(parent);
+                }
+            }
+            level = next;
+        }
+    }
+
+    private static Node subtree(Random random, int depth) {
+        Node node = random.nextInt(4) == 0 ? new SortedNode(random.nextBoolean() ? BY_ID : BY_ID_DESC) : new Node();
+        node.setExpanded(random.nextBoolean());
+        if (depth > 0) {
+            for (int i = random.nextInt(3); i >= 0; i--) {
+                node.insert(subtree(random, depth - 1));
+            }
+        }
+        return node;
+    }
+
+    private static boolean isInSubtree(INode node, INode root) {
+        for (INode n = node; n != null; n = n.getParent()) {
+            if (n == root) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void collect(INode node, List<INode> nodes) {
+        for (INode child : node.getChildren()) {
+            nodes.add(child);
+            collect(child, nodes);
+        }
+    }
+
+    /**
+     * Tracks size of the subtree of a node by the events it receives.
+     */
+    private static class SubtreeObserver implements INode.Observer {
+        final INode node;
+        long size;
+
+        SubtreeObserver(INode node) {
+            this.node = node;
+            this.size = SubtreeSpliterator.absoluteSize(node);
+        }
+
+        @Override
+        public void onInserted(INode child) {
+            assertTrue("inserted " + child.getId(), isInSubtree(child.getParent(), node));
+            size += SubtreeSpliterator.absoluteSize(child);
+        }
+
+        @Override
+        public void onChanged(INode child) {
+            assertTrue("changed " + child.getId(), isInSubtree(child, node));
+        }
+
+        @Override
+        public void onDeleted(INode oldParent, INode child) {
+            assertTrue("deleted " + child.getId(), isInSubtree(oldParent, node));
+            size -= SubtreeSpliterator.absoluteSize(child);
+        }
+
+        @Override
+        public void onReparented(INode oldParent, INode child) {
+            // reported once to the common ancestors of both parents
+            assertTrue("reparented " + child.getId(), isInSubtree(oldParent, node));
+            assertTrue("reparented " + child.getId(), isInSubtree(child.getParent(), node));
+        }
+    }
+}
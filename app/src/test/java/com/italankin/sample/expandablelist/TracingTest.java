@@ -0,0 +1,103 @@
+package com.italankin.sample.expandablelist;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TracingTest {
+
+    @After
+    public void tearDown() {
+        Tracing.setTracer(null);
+    }
+
+    @Test
+    public void sections() {
+        ExpandableList list = new ListBuilder()
+                .add(new NodeBuilder(false)
+                        .add(3))
+                .build();
+        RecordingTracer tracer = new RecordingTracer();
+        Tracing.setTracer(tracer);
+
+        list.expand(list.getChild(0));
+        assertEquals("[ExpandableList.splice, ExpandableList.observers]", tracer.sections.toString());
+        assertEquals(0, tracer.depth);
+
+        tracer.sections.clear();
+        list.invalidate();
+        assertEquals("[ExpandableList.flatten]", tracer.sections.toString());
+
+        tracer.sections.clear();
+        UpdateDispatcher dispatcher = new UpdateDispatcher(list, new RecordingCallback(new ArrayList<>(list)),
+                action -> {
+                });
+        list.setUpdateCallback(dispatcher);
+        list.collapse(list.getChild(0));
+        dispatcher.flush();
+        assertEquals("[ExpandableList.splice, ExpandableList.observers, UpdateDispatcher.flush]",
+                tracer.sections.toString());
+        assertEquals(0, tracer.depth);
+        assertTrue(tracer.maxDepth >= 1);
+    }
+
+    @Test
+    public void balancedOnFailure() {
+        ExpandableList list = new ListBuilder()
+                .add(new NodeBuilder(false)
+                        .add(1))
+                .build();
+        list.setUpdateCallback(new RecordingCallback(new ArrayList<>(list)) {
+            @Override
+            public void onInserted(int position, int count) {
+                throw new IllegalStateException();
+            }
+        });
+        RecordingTracer tracer = new RecordingTracer();
+        Tracing.setTracer(tracer);
+        try {
+            list.expand(list.getChild(0));
+        } catch (IllegalStateException ignored) {
+        }
+        assertEquals(0, tracer.depth);
+    }
+
+    @Test
+    public void noTracer() {
+        ExpandableList list = new ListBuilder()
+                .add(new NodeBuilder(false)
+                        .add(1))
+                .build();
+        list.expand(list.getChild(0));
+        assertEquals(2, list.size());
+    }
+
+    /**
+     * Records names of sections in order of their start.
+     */
+    static class RecordingTracer implements Tracer {
+        final List<String> sections = new ArrayList<>();
+        int depth = 0;
+        int maxDepth = 0;
+
+        @Override
+        public void beginSection(String name) {
+            sections.add(name);
+            depth++;
+            maxDepth = Math.max(maxDepth, depth);
+        }
+
+        @Override
+        public void endSection() {
+            if (depth == 0) {
+                throw new IllegalStateException("no section to end");
+            }
+            depth--;
+        }
+    }
+}
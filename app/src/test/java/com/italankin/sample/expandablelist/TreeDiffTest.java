@@ -0,0 +1,357 @@
+package com.italankin.sample.expandablelist;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class TreeDiffTest {
+
+    private static final TreeDiff.Callback CALLBACK = new TreeDiff.Callback() {
+        @Override
+        public Object getKey(INode node) {
+            return ((KeyNode) node).key;
+        }
+
+        @Override
+        public boolean areContentsTheSame(INode oldNode, INode newNode) {
+            return ((KeyNode) oldNode).content == ((KeyNode) newNode).content;
+        }
+
+        @Override
+        public long getContentHash(INode node) {
+            return ((KeyNode) node).content;
+        }
+    };
+
+    /**
+     * Uses cached subtree hashes of {@link KeyNode}s.
+     */
+    private static final TreeDiff.Callback SUBTREE_HASH_CALLBACK = new TreeDiff.Callback() {
+        @Override
+        public Object getKey(INode node) {
+            return CALLBACK.getKey(node);
+        }
+
+        @Override
+        public boolean areContentsTheSame(INode oldNode, INode newNode) {
+            return CALLBACK.areContentsTheSame(oldNode, newNode);
+        }
+
+        @Override
+        public long getContentHash(INode node) {
+            return ((KeyNode) node).contentHash();
+        }
+
+        @Override
+        public boolean isSubtreeHashCompatible() {
+            return true;
+        }
+    };
+
+    @Test
+    public void sameTrees() {
+        ExpandableList oldList = tree(new Random(1));
+        ExpandableList newList = copy(oldList);
+        TreeDiff.Result result = TreeDiff.calculate(oldList, newList, CALLBACK);
+        assertEquals(0, result.getUpdateCount());
+    }
+
+    @Test
+    public void simpleUpdates() {
+        ExpandableList oldList = new ExpandableList();
+        for (int i = 0; i < 5; i++) {
+            oldList.insert(new KeyNode(i));
+        }
+        ExpandableList newList = new ExpandableList();
+        for (int key : new int[]{4, 0, 1, 5, 3}) {
+            newList.insert(new KeyNode(key));
+        }
+        ((KeyNode) newList.getChild(4)).content = 1;
+        KeyRecorder recorder = new KeyRecorder(oldList);
+        TreeDiff.calculate(oldList, newList, CALLBACK).dispatchUpdatesTo(recorder);
+        assertEquals("[removed(2, 1), moved(3, 0), inserted(3, 1), changed(4, 1)]", recorder.events.toString());
+        assertEquals(Collections.singletonList(null), recorder.payloads);
+        recorder.verify(newList);
+    }
+
+    @Test
+    public void expansionChanges() {
+        ExpandableList oldList = new ExpandableList();
+        KeyNode node = new KeyNode(0);
+        node.insert(new KeyNode(1));
+        node.insert(new KeyNode(2));
+        oldList.insert(node);
+        oldList.insert(new KeyNode(3));
+        ExpandableList newList = copy(oldList);
+        newList.getChild(0).setExpanded(true);
+        KeyRecorder recorder = new KeyRecorder(oldList);
+        TreeDiff.calculate(oldList, newList, CALLBACK).dispatchUpdatesTo(recorder);
+        assertEquals("[changed(0, 1), inserted(1, 2)]", recorder.events.toString());
+        assertEquals(Collections.singletonList(ChangePayload.EXPANSION_CHANGED), recorder.payloads);
+        recorder.verify(newList);
+    }
+
+    @Test
+    public void randomTrees() {
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            ExpandableList oldList = tree(random);
+            ExpandableList newList = copy(oldList);
+            mutate(newList, random, 1 + random.nextInt(10));
+            KeyRecorder recorder = new KeyRecorder(oldList);
+            TreeDiff.calculate(oldList, newList, CALLBACK).dispatchUpdatesTo(recorder);
+            recorder.verify(newList);
+        }
+    }
+
+    @Test
+    public void shuffledChildren() {
+        Random random = new Random(31);
+        for (int i = 0; i < 50; i++) {
+            ExpandableList oldList = tree(random);
+            ExpandableList newList = copy(oldList);
+            List<INode> nodes = new ArrayList<>();
+            nodes.add(newList);
+            collect(newList, nodes);
+            for (INode node : nodes) {
+                List<INode> children = new ArrayList<>(node.getChildren());
+                Collections.shuffle(children, random);
+                node.clear();
+                for (INode child : children) {
+                    node.insert(child);
+                }
+            }
+            KeyRecorder recorder = new KeyRecorder(oldList);
+            TreeDiff.calculate(oldList, newList, CALLBACK).dispatchUpdatesTo(recorder);
+            recorder.verify(newList);
+        }
+    }
+
+    @Test
+    public void subtreeHashes_expansionChanges() {
+        ExpandableList oldList = tree(new Random(5));
+        ExpandableList newList = copy(oldList);
+        assertEquals(0, TreeDiff.calculate(oldList, newList, SUBTREE_HASH_CALLBACK).getUpdateCount());
+        for (INode node : ExpandableListTest.flatten(newList)) {
+            if (!node.getChildren().isEmpty()) {
+                node.setExpanded(!node.isExpanded());
+            }
+        }
+        KeyRecorder recorder = new KeyRecorder(oldList);
+        TreeDiff.calculate(oldList, newList, SUBTREE_HASH_CALLBACK).dispatchUpdatesTo(recorder);
+        recorder.verify(newList);
+    }
+
+    @Test
+    public void subtreeHashes_collision() {
+        ExpandableList oldList = new ExpandableList();
+        ExpandableList newList = new ExpandableList();
+        Node oldNode = collidingTree(1, 2, 3);
+        Node newNode = collidingTree(1, 4, 5);
+        oldList.insert(oldNode);
+        newList.insert(newNode);
+        assertEquals(oldNode.getSubtreeHash(), newNode.getSubtreeHash());
+        KeyRecorder recorder = new KeyRecorder(oldList);
+        TreeDiff.calculate(oldList, newList, SUBTREE_HASH_CALLBACK).dispatchUpdatesTo(recorder);
+        assertEquals(Arrays.asList(1, null, null), recorder.keys);
+        recorder.verify(newList);
+    }
+
+    @Test
+    public void subtreeHashes_randomTrees() {
+        Random random = new Random(32);
+        for (int i = 0; i < 200; i++) {
+            ExpandableList oldList = tree(random);
+            ExpandableList newList = copy(oldList);
+            // hashes are cached before the changes
+            newList.getSubtreeHash();
+            mutate(newList, random, 1 + random.nextInt(10));
+            KeyRecorder recorder = new KeyRecorder(oldList);
+            TreeDiff.calculate(oldList, newList, SUBTREE_HASH_CALLBACK).dispatchUpdatesTo(recorder);
+            recorder.verify(newList);
+        }
+    }
+
+    private static int nextKey = 0;
+
+    private static ExpandableList tree(Random random) {
+        ExpandableList list = new ExpandableList();
+        fill(list, random, 3);
+        for (INode node : ExpandableListTest.flatten(list)) {
+            node.setExpanded(random.nextInt(3) > 0);
+        }
+        return list;
+    }
+
+    private static void fill(INode node, Random random, int depth) {
+        int count = random.nextInt(6);
+        for (int i = 0; i < count; i++) {
+            KeyNode child = new KeyNode(nextKey++);
+            child.setExpanded(true);
+            if (depth > 0) {
+                fill(child, random, depth - 1);
+            }
+            node.insert(child);
+        }
+    }
+
+    private static ExpandableList copy(ExpandableList list) {
+        ExpandableList copy = new ExpandableList();
+        for (INode child : list.getChildren()) {
+            copy.insert(copy(child));
+        }
+        return copy;
+    }
+
+    private static INode copy(INode node) {
+        KeyNode copy = new KeyNode(((KeyNode) node).key);
+        copy.content = ((KeyNode) node).content;
+        copy.setExpanded(node.isExpanded());
+        for (INode child : node.getChildren()) {
+            copy.insert(copy(child));
+        }
+        return copy;
+    }
+
+    private static void mutate(ExpandableList list, Random random, int count) {
+        for (int i = 0; i < count; i++) {
+            List<INode> nodes = new ArrayList<>();
+            nodes.add(list);
+            collect(list, nodes);
+            INode node = nodes.get(random.nextInt(nodes.size()));
+            switch (random.nextInt(5)) {
+                case 0:
+                    node.insert(random.nextInt(node.getChildren().size() + 1), new KeyNode(nextKey++));
+                    break;
+                case 1:
+                    if (node != list) {
+                        node.getParent().delete(node);
+                    }
+                    break;
+                case 2:
+                    if (node != list) {
+                        INode parent = node.getParent();
+                        parent.delete(node);
+                        parent.insert(random.nextInt(parent.getChildren().size() + 1), node);
+                    }
+                    break;
+                case 3:
+                    node.setExpanded(!node.isExpanded());
+                    break;
+                case 4:
+                    if (node != list) {
+                        ((KeyNode) node).content++;
+                        ((KeyNode) node).notifyContentChanged();
+                    }
+                    break;
+            }
+        }
+    }
+
+    private static void collect(INode node, List<INode> nodes) {
+        for (INode child : node.getChildren()) {
+            nodes.add(child);
+            collect(child, nodes);
+        }
+    }
+
+    static class KeyNode extends Node {
+        final int key;
+        int content;
+
+        KeyNode(int key) {
+            this.key = key;
+        }
+
+        @Override
+        protected long contentHash() {
+            return key * 31L + content;
+        }
+    }
+
+    /**
+     * @return expanded node with children, subtree hashes of which only depend on the shape of the tree
+     */
+    private static Node collidingTree(int key, int... childKeys) {
+        Node node = new CollidingNode(key);
+        for (int childKey : childKeys) {
+            node.insert(new CollidingNode(childKey));
+        }
+        node.setExpanded(true);
+        return node;
+    }
+
+    static class CollidingNode extends KeyNode {
+        CollidingNode(int key) {
+            super(key);
+        }
+
+        @Override
+        protected long contentHash() {
+            return 0;
+        }
+    }
+
+    /**
+     * Applies events to the list of keys.
+     */
+    static class KeyRecorder implements ListUpdateCallback {
+        final List<Integer> keys = new ArrayList<>();
+        final List<Integer> changed = new ArrayList<>();
+        final List<String> events = new ArrayList<>();
+        final List<Object> payloads = new ArrayList<>();
+
+        KeyRecorder(ExpandableList list) {
+            for (INode node : new ArrayList<>(list)) {
+                keys.add(((KeyNode) node).key);
+            }
+        }
+
+        @Override
+        public void onInserted(int position, int count) {
+            events.add("inserted(" + position + ", " + count + ")");
+            for (int i = 0; i < count; i++) {
+                keys.add(position, null);
+            }
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            events.add("removed(" + position + ", " + count + ")");
+            keys.subList(position, position + count).clear();
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            events.add("moved(" + fromPosition + ", " + toPosition + ")");
+            keys.add(toPosition, keys.remove(fromPosition));
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            events.add("changed(" + position + ", " + count + ")");
+            payloads.add(payload);
+            for (int i = position; i < position + count; i++) {
+                // changed items are verified as new ones
+                keys.set(i, null);
+            }
+        }
+
+        void verify(ExpandableList list) {
+            List<INode> actual = new ArrayList<>(list);
+            assertEquals(events.toString(), actual.size(), keys.size());
+            for (int i = 0; i < actual.size(); i++) {
+                KeyNode node = (KeyNode) actual.get(i);
+                if (keys.get(i) != null) {
+                    assertEquals(events.toString(), (Integer) node.key, keys.get(i));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.italankin.sample.expandablelist;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TreeImporterTest {
+
+    private final TreeImporter<String> importer = new TreeImporter<>(TextNode::new);
+
+    @Test
+    public void importDepth() throws IOException {
+        ExpandableList list = new ExpandableList();
+        int count = importer.importTo(list, new DepthReader(
+                0, "a",
+                1, "a1",
+                2, "a1x",
+                1, "a2",
+                0, "b",
+                0, "c",
+                1, "c1"));
+        assertEquals(7, count);
+        assertEquals(3, list.getChildCount());
+        assertEquals(7, list.absoluteSize());
+        assertEquals(3, list.size());
+        INode a = list.getChild(0);
+        assertEquals("a", text(a));
+        assertEquals(2, a.getChildren().size());
+        assertEquals("a1x", text(a.getChildren().get(0).getChildren().get(0)));
+        assertEquals("a2", text(a.getChildren().get(1)));
+        assertEquals(0, list.getChild(1).getChildren().size());
+        assertEquals("c1", text(list.getChild(2).getChildren().get(0)));
+    }
+
+    @Test
+    public void importDepth_appends() throws IOException {
+        ExpandableList list = new ListBuilder()
+                .add(new Node())
+                .build();
+        INode first = list.getChild(0);
+        importer.importTo(list, new DepthReader(0, "a", 0, "b"));
+        assertEquals(3, list.size());
+        assertSame(first, list.get(0));
+        assertEquals("b", text(list.get(2)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void importDepth_skipLevel() throws IOException {
+        importer.importTo(new ExpandableList(), new DepthReader(0, "a", 2, "a11"));
+    }
+
+    @Test
+    public void importDepth_failure() {
+        ExpandableList list = new ExpandableList();
+        DepthReader reader = new DepthReader(0, "a", 1, "a1", 0, "b") {
+            @Override
+            public boolean next() throws IOException {
+                if (index == 2) {
+                    throw new IOException();
+                }
+                return super.next();
+            }
+        };
+        try {
+            importer.importTo(list, reader);
+        } catch (IOException ignored) {
+        }
+        assertTrue(list.isEmpty());
+        assertEquals(0, list.absoluteSize());
+    }
+
+    @Test
+    public void importKeyed() throws IOException {
+        ExpandableList list = new ExpandableList();
+        int count = importer.importTo(list, new KeyedReader(
+                1, null, "a",
+                2, 1, "a1",
+                3, 2, "a1x",
+                4, 1, "a2",
+                5, null, "b",
+                6, 5, "b1"));
+        assertEquals(6, count);
+        assertEquals(2, list.getChildCount());
+        assertEquals(6, list.absoluteSize());
+        INode a = list.getChild(0);
+        assertEquals(2, a.getChildren().size());
+        assertEquals("a2", text(a.getChildren().get(1)));
+        assertEquals("b1", text(list.getChild(1).getChildren().get(0)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void importKeyed_notPreorder() throws IOException {
+        importer.importTo(new ExpandableList(), new KeyedReader(
+                1, null, "a",
+                2, null, "b",
+                3, 1, "a1"));
+    }
+
+    private static String text(INode node) {
+        return ((TextNode) node).text;
+    }
+
+    static class TextNode extends Node {
+        final String text;
+
+        TextNode(String text) {
+            this.text = text;
+        }
+    }
+
+    static class DepthReader implements TreeImporter.RecordReader<String> {
+        final Object[] records;
+        int index = -1;
+
+        DepthReader(Object... records) {
+            this.records = records;
+        }
+
+        @Override
+        public boolean next() throws IOException {
+            index++;
+            return index * 2 < records.length;
+        }
+
+        @Override
+        public int depth() {
+            return (Integer) records[index * 2];
+        }
+
+        @Override
+        public String payload() {
+            return (String) records[index * 2 + 1];
+        }
+    }
+
+    static class KeyedReader implements TreeImporter.KeyedRecordReader<Integer, String> {
+        final Object[] records;
+        int index = -1;
+
+        KeyedReader(Object... records) {
+            this.records = records;
+        }
+
+        @Override
+        public boolean next() {
+            index++;
+            return index * 3 < records.length;
+        }
+
+        @Override
+        public Integer key() {
+            return (Integer) records[index * 3];
+        }
+
+        @Override
+        public Integer parentKey() {
+            return (Integer) records[index * 3 + 1];
+        }
+
+        @Override
+        public String payload() {
+            return (String) records[index * 3 + 2];
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.italankin.sample.expandablelist;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TreeProjectionTest {
+
+    @Test
+    public void independentExpansion() {
+        INode a = new NodeBuilder(false).add(2).build();
+        INode b = new NodeBuilder(true).add(3).build();
+        ExpandableList list = new ListBuilder()
+                .add(a)
+                .add(b)
+                .build();
+        TreeProjection left = new TreeProjection(list);
+        TreeProjection right = new TreeProjection(list);
+        assertEquals(2, left.size());
+
+        assertEquals(2, left.setExpanded(a, true));
+        assertEquals(3, right.setExpanded(b, true));
+        assertTrue(left.isExpanded(a));
+        assertFalse(right.isExpanded(a));
+        assertEquals(4, left.size());
+        assertEquals(5, right.size());
+        // state of nodes is not used
+        assertEquals(5, list.size());
+        assertEquals(0, left.setExpanded(a, true));
+        assertEquals(-2, left.setExpanded(a, false));
+        assertEquals(2, left.size());
+    }
+
+    @Test
+    public void hiddenExpansion() {
+        INode inner = new NodeBuilder(false).add(2).build();
+        INode outer = new NodeBuilder(false).add(inner).build();
+        TreeProjection projection = new TreeProjection(new ListBuilder().add(outer).build());
+        assertEquals(0, projection.setExpanded(inner, true));
+        assertEquals(3, projection.setExpanded(outer, true));
+        assertEquals(4, projection.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setExpanded_nonMember() {
+        TreeProjection projection = new TreeProjection(new ListBuilder().add(new Node()).build());
+        projection.setExpanded(new Node(), true);
+    }
+
+    @Test
+    public void randomChanges() {
+        Random random = new Random(9);
+        ExpandableList list = ExpandableListTest.randomList(random, 3);
+        TreeProjection[] projections = {new TreeProjection(list), new TreeProjection(list)};
+        RecordingCallback[] callbacks = new RecordingCallback[projections.length];
+        for (int i = 0; i < projections.length; i++) {
+            callbacks[i] = new RecordingCallback(new ArrayList<>(projections[i]));
+            projections[i].setUpdateCallback(callbacks[i]);
+        }
+        for (int round = 0; round < 300; round++) {
+            List<INode> nodes = new ArrayList<>();
+            collect(list, nodes);
+            INode node = nodes.isEmpty() ? null : nodes.get(random.nextInt(nodes.size()));
+            int action = node == null ? 0 : random.nextInt(5);
+            switch (action) {
+                case 0: {
+                    INode parent = node == null || random.nextBoolean() ? list : node;
+                    parent.insert(random.nextInt(parent.getChildren().size() + 1),
+                            new NodeBuilder(false).add(random.nextInt(3)).build());
+                    break;
+                }
+                case 1:
+                    node.getParent().delete(node);
+                    break;
+                case 2:
+                    if (node.getParent() instanceof Node) {
+                        ((Node) node.getParent()).sortChildren((o1, o2) -> Long.compare(o2.getId(), o1.getId()));
+                    }
+                    break;
+                default: {
+                    TreeProjection projection = projections[random.nextInt(projections.length)];
+                    projection.setExpanded(node, !projection.isExpanded(node));
+                    break;
+                }
+            }
+            for (int i = 0; i < projections.length; i++) {
+                assertEquals(flatten(projections[i], list), projections[i]);
+                verifyPositions(projections[i], list);
+                callbacks[i].verify(projections[i]);
+            }
+        }
+    }
+
+    @Test
+    public void move_keepsState() {
+        INode inner = new NodeBuilder(false).add(2).build();
+        INode moved = new NodeBuilder(false).add(inner).add(1).build();
+        INode target = new NodeBuilder(false).add(1).build();
+        ExpandableList list = new ListBuilder()
+                .add(moved)
+                .add(target)
+                .build();
+        TreeProjection projection = new TreeProjection(list);
+        RecordingCallback callback = new RecordingCallback(new ArrayList<>(projection));
+        projection.setUpdateCallback(callback);
+        projection.setExpanded(target, true);
+        projection.setExpanded(inner, true);
+        projection.setExpanded(moved, true);
+        callback.events.clear();
+
+        list.move(moved, target, 1);
+        assertTrue(projection.isExpanded(moved));
+        assertTrue(projection.isExpanded(inner));
+        assertEquals(flatten(projection, list), projection);
+        for (String event : callback.events) {
+            assertTrue(event, event.startsWith("moved"));
+        }
+        callback.verify(projection);
+
+        // collapsed in the projection: rows are removed, state is kept
+        projection.setExpanded(target, false);
+        list.move(moved, list, 0);
+        assertTrue(projection.isExpanded(inner));
+        assertEquals(flatten(projection, list), projection);
+        callback.verify(projection);
+    }
+
+    @Test
+    public void randomMoves() {
+        Random random = new Random(39);
+        ExpandableList list = ExpandableListTest.randomList(random, 3);
+        TreeProjection projection = new TreeProjection(list);
+        RecordingCallback callback = new RecordingCallback(new ArrayList<>(projection));
+        projection.setUpdateCallback(callback);
+        for (int round = 0; round < 300; round++) {
+            List<INode> nodes = new ArrayList<>();
+            collect(list, nodes);
+            INode node = nodes.get(random.nextInt(nodes.size()));
+            if (random.nextBoolean()) {
+                projection.setExpanded(node, !projection.isExpanded(node));
+            } else {
+                INode newParent = nodes.get(random.nextInt(nodes.size()));
+                for (INode n = newParent; n != null; n = n.getParent()) {
+                    if (n == node) {
+                        newParent = list;
+                        break;
+                    }
+                }
+                list.move(node, newParent);
+            }
+            assertEquals(flatten(projection, list), projection);
+            verifyPositions(projection, list);
+            callback.verify(projection);
+        }
+    }
+
+    private static List<INode> flatten(TreeProjection projection, INode node) {
+        List<INode> result = new ArrayList<>();
+        for (INode child : node.getChildren()) {
+            result.add(child);
+            if (projection.isExpanded(child)) {
+                result.addAll(flatten(projection, child));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Check positions of all nodes of the tree, including hidden ones.
+     */
+    private static void verifyPositions(TreeProjection projection, INode root) {
+        List<INode> expected = flatten(projection, root);
+        List<INode> nodes = new ArrayList<>();
+        collect(root, nodes);
+        for (INode node : nodes) {
+            assertEquals(expected.indexOf(node), projection.indexOf(node));
+        }
+    }
+
+    private static void collect(INode node, List<INode> nodes) {
+        for (INode child : node.getChildren()) {
+            nodes.add(child);
+            collect(child, nodes);
+        }
+    }
+}
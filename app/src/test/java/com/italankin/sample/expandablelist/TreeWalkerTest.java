@@ -0,0 +1,188 @@
+package com.italankin.sample.expandablelist;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TreeWalkerTest {
+
+    @Test
+    public void order() {
+        ExpandableList list = ExpandableListTest.randomList(new Random(48), 4);
+        List<String> expected = new ArrayList<>();
+        for (INode child : list.getChildren()) {
+            record(child, 0, expected);
+        }
+        EventVisitor visitor = new EventVisitor();
+        assertTrue(list.walk(visitor));
+        assertEquals(expected, visitor.events);
+
+        // the same walker is reused
+        TreeWalker walker = new TreeWalker();
+        for (int i = 0; i < 2; i++) {
+            INode node = list.getChild(0);
+            expected.clear();
+            record(node, 0, expected);
+            visitor.events.clear();
+            assertTrue(walker.walk(node, visitor));
+            assertEquals(expected, visitor.events);
+        }
+    }
+
+    @Test
+    public void skipChildren() {
+        ExpandableList list = new ListBuilder()
+                .add(new NodeBuilder(false)
+                        .add(2))
+                .add(new NodeBuilder(true)
+                        .add(1))
+                .build();
+        List<INode> entered = new ArrayList<>();
+        List<INode> left = new ArrayList<>();
+        list.walk(new TreeWalker.Visitor() {
+            @Override
+            public TreeWalker.Action enter(INode node, int depth) {
+                entered.add(node);
+                return node.isExpanded() ? TreeWalker.Action.CONTINUE : TreeWalker.Action.SKIP_CHILDREN;
+            }
+
+            @Override
+            public void leave(INode node, int depth) {
+                left.add(node);
+            }
+        });
+        assertEquals(new ArrayList<>(list), entered);
+        assertEquals(3, left.size());
+    }
+
+    @Test
+    public void stop() {
+        ExpandableList list = new ListBuilder()
+                .add(new NodeBuilder(true)
+                        .add(3))
+                .add(new NodeBuilder(true)
+                        .add(3))
+                .build();
+        INode target = list.getChild(0).getChildren().get(1);
+        List<INode> entered = new ArrayList<>();
+        assertFalse(list.walk((node, depth) -> {
+            entered.add(node);
+            return node == target ? TreeWalker.Action.STOP : TreeWalker.Action.CONTINUE;
+        }));
+        assertEquals(3, entered.size());
+        // stopped walk leaves the walker usable
+        entered.clear();
+        assertTrue(list.walk((node, depth) -> {
+            entered.add(node);
+            return TreeWalker.Action.CONTINUE;
+        }));
+        assertEquals(8, entered.size());
+    }
+
+    @Test
+    public void nested() {
+        ExpandableList list = ExpandableListTest.randomList(new Random(49), 3);
+        TreeWalker walker = new TreeWalker();
+        int[] counts = new int[2];
+        walker.walkChildren(list, (node, depth) -> {
+            counts[0]++;
+            // size of the subtree, counted by a nested walk
+            walker.walk(node, (n, d) -> {
+                counts[1]++;
+                return TreeWalker.Action.CONTINUE;
+            });
+            return TreeWalker.Action.CONTINUE;
+        });
+        int expected = 0;
+        List<INode> all = new ArrayList<>();
+        NodeTest.collectAll(list, all);
+        for (INode node : all) {
+            for (INode p = node; p != list; p = p.getParent()) {
+                expected++;
+            }
+        }
+        assertEquals(list.absoluteSize(), counts[0]);
+        assertEquals(expected, counts[1]);
+    }
+
+    @Test
+    public void deepTree() {
+        // built from the bottom, so parents are not notified recursively
+        Node root = new Node();
+        for (int i = 0; i < 100_000; i++) {
+            Node parent = new Node();
+            parent.insert(root);
+            root = parent;
+        }
+        int[] max = new int[1];
+        new TreeWalker().walk(root, (node, depth) -> {
+            max[0] = Math.max(max[0], depth);
+            return TreeWalker.Action.CONTINUE;
+        });
+        assertEquals(100_000, max[0]);
+    }
+
+    @Test
+    public void deepTree_members() {
+        // deep enough to overflow the call stack of a recursive traversal
+        int depth = 50_000;
+        Node root = new Node();
+        for (int i = 0; i < depth; i++) {
+            Node parent = new Node();
+            parent.insert(root);
+            root = parent;
+        }
+        assertEquals(depth + 1, SubtreeSpliterator.absoluteSize(root));
+        long hash = root.getSubtreeHash();
+        ExpandableList list = new ExpandableList();
+        list.insert(root);
+        // expanded by the list, because events of detached nodes are bubbled through their parents
+        for (INode node = root; !node.getChildren().isEmpty(); node = node.getChildren().get(0)) {
+            list.expand(node);
+        }
+        assertEquals(depth + 1, list.size());
+        assertEquals(depth + 1, list.absoluteSize());
+        assertEquals(depth, list.getDepth(depth));
+        assertEquals(hash, root.getSubtreeHash());
+        FilteredExpandableList filtered = new FilteredExpandableList(list, node -> node.getChildren().isEmpty());
+        assertEquals(depth + 1, filtered.size());
+        TreeProjection projection = new TreeProjection(list);
+        // bottom up, so rows are inserted once
+        for (int i = list.size() - 1; i >= 0; i--) {
+            projection.setExpanded(list.get(i), true);
+        }
+        assertEquals(depth + 1, projection.size());
+        list.delete(root);
+        assertEquals(0, filtered.size());
+        assertEquals(0, projection.size());
+    }
+
+    private static void record(INode node, int depth, List<String> events) {
+        events.add("enter " + node.getId() + " " + depth);
+        for (INode child : node.getChildren()) {
+            record(child, depth + 1, events);
+        }
+        events.add("leave " + node.getId() + " " + depth);
+    }
+
+    static class EventVisitor implements TreeWalker.Visitor {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public TreeWalker.Action enter(INode node, int depth) {
+            events.add("enter " + node.getId() + " " + depth);
+            return TreeWalker.Action.CONTINUE;
+        }
+
+        @Override
+        public void leave(INode node, int depth) {
+            events.add("leave " + node.getId() + " " + depth);
+        }
+    }
+}
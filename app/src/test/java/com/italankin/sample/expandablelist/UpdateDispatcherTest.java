@@ -0,0 +1,246 @@
+package com.italankin.sample.expandablelist;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class UpdateDispatcherTest {
+
+    private ExpandableList list;
+    private RecordingCallback callback;
+    private ManualScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        list = new ListBuilder()
+                .add(new NodeBuilder(true)
+                        .add(3))
+                .add(new NodeBuilder(false)
+                        .add(2))
+                .add(new Node())
+                .build();
+        callback = new RecordingCallback(new ArrayList<>(list));
+        scheduler = new ManualScheduler();
+    }
+
+    @Test
+    public void streamingInserts() {
+        list.setUpdateCallback(new UpdateDispatcher(list, callback, scheduler));
+        INode parent = list.getChild(0);
+        for (int i = 0; i < 100; i++) {
+            parent.insert(new Node());
+        }
+        assertEquals(0, callback.events.size());
+        assertEquals(1, scheduler.actions.size());
+
+        scheduler.frame();
+        assertEquals("[inserted(4, 100)]", callback.events.toString());
+        callback.verify(list);
+    }
+
+    @Test
+    public void insertThenRemove() {
+        UpdateDispatcher dispatcher = new UpdateDispatcher(list, callback, scheduler);
+        list.setUpdateCallback(dispatcher);
+        INode node = new Node();
+        list.insert(node);
+        list.delete(node);
+        assertFalse(dispatcher.hasPending());
+        scheduler.frame();
+        assertEquals(0, callback.events.size());
+    }
+
+    @Test
+    public void toggles() {
+        list.setUpdateCallback(new UpdateDispatcher(list, callback, scheduler));
+        INode header = list.getChild(1);
+        header.setExpanded(true);
+        header.setExpanded(false);
+        header.setExpanded(true);
+        scheduler.frame();
+        callback.verify(list);
+        assertEquals(1, scheduler.frames);
+    }
+
+    @Test
+    public void mergeChanges() {
+        UpdateDispatcher dispatcher = new UpdateDispatcher(list, callback, scheduler);
+        dispatcher.onChanged(2, 2, null);
+        dispatcher.onChanged(4, 1, null);
+        dispatcher.onChanged(1, 2, null);
+        dispatcher.onChanged(3, 1, ChangePayload.EXPANSION_CHANGED);
+        dispatcher.flush();
+        assertEquals("[changed(1, 4), changed(3, 1)]", callback.events.toString());
+    }
+
+    @Test
+    public void mergeRemovals() {
+        UpdateDispatcher dispatcher = new UpdateDispatcher(list, callback, scheduler);
+        list.setUpdateCallback(dispatcher);
+        // remove items before the last removed one
+        list.getChild(0).delete(list.getChild(0).getChildren().get(2));
+        list.getChild(0).delete(list.getChild(0).getChildren().get(1));
+        list.getChild(0).delete(list.getChild(0).getChildren().get(0));
+        scheduler.frame();
+        assertEquals("[removed(1, 3)]", callback.events.toString());
+        callback.verify(list);
+    }
+
+    @Test
+    public void overflow() {
+        list.setUpdateCallback(new UpdateDispatcher(list, callback, scheduler, 4));
+        int oldSize = list.size();
+        for (int i = 0; i < 10; i++) {
+            // inserts at the beginning of the list are not adjacent to previous ones
+            list.insert(0, new Node());
+            list.getChild(list.getChildCount() - 1).setExpanded(i % 2 == 0);
+        }
+        scheduler.frame();
+        assertEquals("[removed(0, " + oldSize + "), inserted(0, " + list.size() + ")]", callback.events.toString());
+        callback.verify(list);
+    }
+
+    @Test
+    public void random() {
+        UpdateDispatcher dispatcher = new UpdateDispatcher(list, callback, scheduler, 16);
+        list.setUpdateCallback(dispatcher);
+        Random random = new Random(7);
+        for (int frame = 0; frame < 100; frame++) {
+            for (int i = random.nextInt(30); i >= 0; i--) {
+                List<INode> nodes = ExpandableListTest.flatten(list);
+                int action = nodes.isEmpty() ? 0 : random.nextInt(3);
+                if (action == 0) {
+                    INode parent = nodes.isEmpty() || random.nextBoolean()
+                            ? list : nodes.get(random.nextInt(nodes.size()));
+                    parent.insert(random.nextInt(parent.getChildren().size() + 1), new Node());
+                } else if (action == 1) {
+                    INode node = nodes.get(random.nextInt(nodes.size()));
+                    node.getParent().delete(node);
+                } else {
+                    INode node = nodes.get(random.nextInt(nodes.size()));
+                    node.setExpanded(!node.isExpanded());
+                }
+            }
+            scheduler.frame();
+            assertFalse(dispatcher.hasPending());
+            callback.verify(list);
+        }
+    }
+
+    @Test
+    public void flushListener() {
+        List<INode> snapshot = new ArrayList<>(list);
+        List<String> order = new ArrayList<>();
+        UpdateDispatcher dispatcher = new UpdateDispatcher(list, new ListUpdateCallback() {
+            @Override
+            public void onInserted(int position, int count) {
+                order.add("inserted");
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                order.add("removed");
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                order.add("moved");
+            }
+
+            @Override
+            public void onChanged(int position, int count, Object payload) {
+                order.add("changed");
+            }
+        }, scheduler);
+        dispatcher.setFlushListener(() -> {
+            order.add("flush");
+            snapshot.clear();
+            snapshot.addAll(list);
+        });
+        list.setUpdateCallback(dispatcher);
+        List<INode> before = new ArrayList<>(snapshot);
+        list.delete(list.getChild(2));
+        list.getChild(1).setExpanded(true);
+        // the snapshot is not changed until the frame
+        assertEquals(before, snapshot);
+        scheduler.frame();
+        assertEquals(new ArrayList<>(list), snapshot);
+        assertEquals("[flush, removed, inserted, changed]", order.toString());
+    }
+
+    @Test
+    public void snapshot() {
+        UpdateDispatcher dispatcher = new UpdateDispatcher(list, callback, scheduler, 16);
+        ListSnapshot<INode> snapshot = new ListSnapshot<>(list);
+        dispatcher.setSnapshot(snapshot);
+        list.setUpdateCallback(dispatcher);
+        Random random = new Random(36);
+        for (int frame = 0; frame < 200; frame++) {
+            List<INode> before = new ArrayList<>(snapshot);
+            for (int i = random.nextInt(20); i >= 0; i--) {
+                List<INode> nodes = ExpandableListTest.flatten(list);
+                int action = nodes.isEmpty() ? 0 : random.nextInt(4);
+                if (action == 0) {
+                    INode parent = nodes.isEmpty() || random.nextBoolean()
+                            ? list : nodes.get(random.nextInt(nodes.size()));
+                    parent.insert(random.nextInt(parent.getChildren().size() + 1), new Node());
+                } else if (action == 1) {
+                    INode node = nodes.get(random.nextInt(nodes.size()));
+                    node.getParent().delete(node);
+                } else if (action == 2) {
+                    INode node = nodes.get(random.nextInt(nodes.size()));
+                    list.move(node, list, random.nextInt(list.getChildren().size()
+                            - (node.getParent() == list ? 1 : 0) + 1));
+                } else {
+                    INode node = nodes.get(random.nextInt(nodes.size()));
+                    node.setExpanded(!node.isExpanded());
+                }
+            }
+            // the snapshot is not changed until the frame
+            assertEquals(before, snapshot);
+            scheduler.frame();
+            assertEquals("frame=" + frame, new ArrayList<>(list), new ArrayList<>(snapshot));
+            callback.verify(list);
+        }
+    }
+
+    @Test
+    public void flushWithoutChanges() {
+        UpdateDispatcher dispatcher = new UpdateDispatcher(list, callback, scheduler);
+        int[] flushes = new int[1];
+        dispatcher.setFlushListener(() -> flushes[0]++);
+        list.setUpdateCallback(dispatcher);
+        list.getChild(1).setExpanded(true);
+        dispatcher.flush();
+        assertEquals(1, flushes[0]);
+        // the frame posted before the manual flush has nothing to do
+        scheduler.frame();
+        assertEquals(1, flushes[0]);
+        callback.verify(list);
+    }
+
+    static class ManualScheduler implements UpdateDispatcher.FrameScheduler {
+        final List<Runnable> actions = new ArrayList<>();
+        int frames = 0;
+
+        @Override
+        public void postFrame(Runnable action) {
+            actions.add(action);
+        }
+
+        void frame() {
+            List<Runnable> current = new ArrayList<>(actions);
+            actions.clear();
+            for (Runnable action : current) {
+                action.run();
+            }
+            frames++;
+        }
+    }
+}
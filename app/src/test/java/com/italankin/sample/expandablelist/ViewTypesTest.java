@@ -0,0 +1,150 @@
+package com.italankin.sample.expandablelist;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class ViewTypesTest {
+
+    @Test
+    public void typesByClass() {
+        assertEquals(new T0().getViewType(), new T0().getViewType());
+        assertNotEquals(new T0().getViewType(), new T1().getViewType());
+        assertEquals(ViewTypes.of(T2.class), new T2().getViewType());
+        assertEquals(ViewTypes.of(T3.class), ViewTypes.of(T3.class));
+    }
+
+    @Test
+    public void concurrentRegistration() throws InterruptedException {
+        Thread[] threads = new Thread[4];
+        int[][] types = new int[threads.length][];
+        for (int t = 0; t < threads.length; t++) {
+            int[] result = types[t] = new int[TYPES.size()];
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < result.length; i++) {
+                    result[i] = create(i).getViewType();
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int[] result : types) {
+            for (int i = 0; i < result.length; i++) {
+                assertEquals(ViewTypes.of(TYPES.get(i)), result[i]);
+            }
+        }
+    }
+
+    @Test
+    public void dispatch() {
+        List<INode> nodes = nodes(new Random(1), 1000);
+        Factory[] factories = factories();
+        Factory[] byViewType = byViewType(factories);
+        for (INode node : nodes) {
+            assertEquals(node.getClass(), byViewType[node.getViewType()].type);
+            assertEquals(node.getClass(), instanceOfChain(factories, node).type);
+        }
+    }
+
+    private static Factory instanceOfChain(Factory[] factories, INode node) {
+        for (Factory factory : factories) {
+            if (factory.type.isInstance(node)) {
+                return factory;
+            }
+        }
+        throw new IllegalStateException("no factory for " + node);
+    }
+
+    private static List<INode> nodes(Random random, int count) {
+        List<INode> nodes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            nodes.add(create(random.nextInt(TYPES.size())));
+        }
+        return nodes;
+    }
+
+    /**
+     * @return factories in the order of {@link #TYPES}
+     */
+    private static Factory[] factories() {
+        Factory[] factories = new Factory[TYPES.size()];
+        for (int i = 0; i < TYPES.size(); i++) {
+            factories[i] = new Factory(TYPES.get(i));
+        }
+        return factories;
+    }
+
+    /**
+     * @return factories indexed by view types, types registered by other tests are left empty
+     */
+    private static Factory[] byViewType(Factory[] factories) {
+        for (Factory factory : factories) {
+            ViewTypes.of(factory.type);
+        }
+        Factory[] result = new Factory[ViewTypes.count()];
+        for (Factory factory : factories) {
+            result[ViewTypes.of(factory.type)] = factory;
+        }
+        return result;
+    }
+
+    private static INode create(int index) {
+        try {
+            return TYPES.get(index).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    static class Factory {
+        final Class<? extends INode> type;
+
+        Factory(Class<? extends INode> type) {
+            this.type = type;
+        }
+    }
+
+    /**
+     * Node types with distinct view types, also used by the adapter dispatch benchmark.
+     */
+    public static final List<Class<? extends INode>> TYPES = Arrays.asList(
+            T0.class, T1.class, T2.class, T3.class, T4.class, T5.class, T6.class, T7.class,
+            T8.class, T9.class, T10.class, T11.class, T12.class, T13.class, T14.class, T15.class,
+            T16.class, T17.class, T18.class, T19.class, T20.class, T21.class, T22.class, T23.class
+    );
+
+    public static class T0 extends Node {}
+    public static class T1 extends Node {}
+    public static class T2 extends Node {}
+    public static class T3 extends Node {}
+    public static class T4 extends Node {}
+    public static class T5 extends Node {}
+    public static class T6 extends Node {}
+    public static class T7 extends Node {}
+    public static class T8 extends Node {}
+    public static class T9 extends Node {}
+    public static class T10 extends Node {}
+    public static class T11 extends Node {}
+    public static class T12 extends Node {}
+    public static class T13 extends Node {}
+    public static class T14 extends Node {}
+    public static class T15 extends Node {}
+    public static class T16 extends Node {}
+    public static class T17 extends Node {}
+    public static class T18 extends Node {}
+    public static class T19 extends Node {}
+    public static class T20 extends Node {}
+    public static class T21 extends Node {}
+    public static class T22 extends Node {}
+    public static class T23 extends Node {}
+}